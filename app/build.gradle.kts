@@ -25,6 +25,10 @@ android {
             )
         }
     }
+    androidResources {
+        // the opening book is memory-mapped straight from the APK
+        noCompress += "bin"
+    }
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
@@ -33,11 +37,14 @@ android {
 
 dependencies {
 
+    implementation(project(":chess-core"))
     implementation(libs.appcompat)
     implementation(libs.material)
     implementation(libs.activity)
     implementation(libs.constraintlayout)
     testImplementation(libs.junit)
+    // org.json is only stubbed in android.jar, unit tests need the real one
+    testImplementation(libs.json)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
 }
\ No newline at end of file
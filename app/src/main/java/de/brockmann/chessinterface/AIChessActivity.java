@@ -1,20 +1,48 @@
 package de.brockmann.chessinterface;
 
+import android.content.res.AssetFileDescriptor;
 import android.os.Bundle;
 import android.view.View;
 import android.widget.Button;
-import android.widget.FrameLayout;
-import android.widget.ImageView;
-import android.widget.Toast;
+import android.widget.TextView;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import de.brockmann.chessinterface.core.Piece;
+import de.brockmann.chessinterface.core.Square;
+import de.brockmann.chessinterface.engine.BookEngine;
+import de.brockmann.chessinterface.engine.ChessEngine;
+import de.brockmann.chessinterface.engine.PolyglotBook;
+import de.brockmann.chessinterface.engine.Search;
+import de.brockmann.chessinterface.engine.SearchLimits;
+import de.brockmann.chessinterface.engine.TablebaseEngine;
+import de.brockmann.chessinterface.engine.TimeManager;
 
 /**
- * Chess activity against the Stockfish engine.
+ * Chess activity against Stockfish or the offline engine.
  */
 public class AIChessActivity extends ChessActivity {
 
-    private StockfishClient engine;
+    // optional Polyglot opening book, stored uncompressed so it can be mapped
+    private static final String BOOK_ASSET = "book.bin";
+    // the 781 Polyglot random numbers as big-endian longs, needed for book keys
+    private static final String BOOK_KEYS_ASSET = "polyglot_random64.bin";
+
+    private ChessEngine engine;
+    // one long-lived worker instead of a new thread per move; the offline
+    // engine adds its own helper threads for the search
+    private final ExecutorService engineExecutor = Executors.newSingleThreadExecutor();
     private int aiStrength;
     private char aiColor;
+    private TimeManager timeManager;
+    private TextView opponentName;
+    // bumped by a new game or resignation, so that a reply still on its way is dropped
+    private int moveRequest;
 
     @Override
     protected int getContentLayoutId() {
@@ -27,32 +55,66 @@ public class AIChessActivity extends ChessActivity {
 
         aiStrength = getIntent().getIntExtra(MenuAIActivity.EXTRA_AI_STRENGTH, 800);
         aiColor = getIntent().getCharExtra(MenuAIActivity.EXTRA_AI_COLOR, 'B');
+        int moveTime = getSharedPreferences("prefs", MODE_PRIVATE).getInt(
+                SettingsMenuActivity.PREF_AI_MOVE_TIME, SettingsMenuActivity.DEFAULT_AI_MOVE_TIME);
+        timeManager = TimeManager.perMove(moveTime * 1000L);
+        opponentName = findViewById(R.id.tv_opponent_name);
+        if (opponentName != null) opponentName.setText("Engine (" + aiStrength + ")");
 
-        if (hasInternetConnection()) {
-            engine = new StockfishClient();
-            engine.start();
-        } else {
-            engine = null;
-            Toast.makeText(this, R.string.no_internet, Toast.LENGTH_LONG).show();
-        }
+        // one engine for the whole game, its hash table carries over between moves
+        // endgames with three pieces are looked up, not searched
+        engine = new TablebaseEngine(createEngine());
+        engine.setElo(aiStrength);
+        PolyglotBook book = openBook();
+        if (book != null) engine = new BookEngine(engine, book);
 
         // only allow resignation in AI mode
         Button draw = findViewById(R.id.btn_offer_draw);
         if (draw != null) draw.setVisibility(View.GONE);
         Button resign = findViewById(R.id.btn_resign_game);
         if (resign != null) resign.setOnClickListener(v -> showResignConfirmOverlay());
+    }
 
-        chessBoardGrid.post(() -> {
-            if (currentPlayerTurn == aiColor) {
-                makeAIMove();
-            }
-        });
+    @Override
+    protected void onNewGame() {
+        abandonSearch();
+        if (currentPlayerTurn == aiColor) {
+            makeAIMove();
+        }
+    }
+
+    @Override
+    protected void onResigned() {
+        abandonSearch();
+    }
+
+    private void abandonSearch() {
+        moveRequest++;
+        if (engine != null) engine.cancel();
+    }
+
+    @Override
+    protected boolean isUserTurn() {
+        return currentPlayerTurn != aiColor;
+    }
+
+    /** The bundled opening book, or null if the app ships without one. */
+    private PolyglotBook openBook() {
+        try (InputStream keys = getAssets().open(BOOK_KEYS_ASSET);
+             AssetFileDescriptor fd = getAssets().openFd(BOOK_ASSET);
+             FileInputStream in = fd.createInputStream()) {
+            return PolyglotBook.open(in.getChannel(), fd.getStartOffset(), fd.getLength(),
+                    PolyglotBook.readKeys(keys));
+        } catch (IOException e) {
+            return null;
+        }
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
         if (engine != null) engine.stop();
+        engineExecutor.shutdownNow();
     }
 
     @Override
@@ -65,26 +127,30 @@ public class AIChessActivity extends ChessActivity {
 
     private void makeAIMove() {
         if (engine == null) return;
-        new Thread(() -> {
-            String fen = getFEN();
-            int depth = 8 + (aiStrength - 800) / 200;
-            String best = engine.getBestMove(fen, depth);
+        String fen = getFEN();
+        int request = moveRequest;
+        engineExecutor.execute(() -> {
+            // the engine caps depth and nodes by its Elo, the clock caps the time
+            SearchLimits limits = timeManager.limits(Search.MAX_PLY - 1);
+            long start = System.nanoTime();
+            String best = engine.getBestMove(fen, limits);
+            long spentMs = (System.nanoTime() - start) / 1_000_000L;
             if (best == null || best.length() < 4) return;
-            int from = algebraicToIndex(best.substring(0, 2));
-            int to = algebraicToIndex(best.substring(2, 4));
+            int from = Square.fromAlgebraic(best.substring(0, 2));
+            int to = Square.fromAlgebraic(best.substring(2, 4));
+            if (from == Square.NONE || to == Square.NONE) return;
+            int promoPiece = best.length() > 4 ? Piece.fromChar(best.charAt(4)) : Piece.NONE;
+            int promotion = promoPiece == Piece.NONE ? Piece.QUEEN : Piece.type(promoPiece);
             runOnUiThread(() -> {
-                FrameLayout cell = (FrameLayout) chessBoardGrid.getChildAt(from);
-                if (cell == null || cell.getChildCount() == 0) return;
-                ImageView piece = (ImageView) cell.getChildAt(0);
-                performMove(from, to, piece);
+                // the game may have moved on meanwhile; an outdated reply could
+                // name an empty square or an illegal move
+                if (request != moveRequest || !getFEN().equals(fen) || !isLegalMove(from, to)) return;
+                if (opponentName != null) {
+                    opponentName.setText(String.format(Locale.US,
+                            "Engine (%d) · %s in %.1f s", aiStrength, best, spentMs / 1000.0));
+                }
+                performMove(from, to, promotion, true);
             });
-        }).start();
-    }
-
-    private int algebraicToIndex(String sq) {
-        int file = sq.charAt(0) - 'a';
-        int rank = sq.charAt(1) - '1';
-        int row = 7 - rank;
-        return row * 8 + file;
+        });
     }
 }
@@ -1,19 +1,60 @@
 package de.brockmann.chessinterface;
 
 import android.os.Bundle;
+import android.view.MotionEvent;
 import android.widget.Button;
-import android.widget.FrameLayout;
+import android.widget.TextView;
 import android.widget.Toast;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import de.brockmann.chessinterface.core.Square;
+import de.brockmann.chessinterface.engine.AnalysisResult;
+import de.brockmann.chessinterface.engine.CachingEngine;
+import de.brockmann.chessinterface.engine.GameAnalysis;
+import de.brockmann.chessinterface.engine.LocalEngine;
 
 public class AnalysisChessActivity extends ChessActivity {
 
-    private StockfishClient engine;
+    private static final int ANALYSIS_DEPTH = 10;
+    private static final int CACHE_ENTRIES = 2000;
+    private static final long CACHE_BYTES = 1024 * 1024;
+    // parallel requests of the whole-game analysis with stockfish.online
+    private static final int GAME_ANALYSIS_WORKERS = 2;
+    // lines shown as arrows
+    private static final int MULTI_PV = 3;
+    // step interval while a navigation button is held
+    private static final long SCRUB_INTERVAL_MS = 50;
+
+    private CachingEngine engine;
     private BestMoveArrowView arrowView;
     private final List<String> history = new ArrayList<>();
+    // moves.get(i) leads from history.get(i) to history.get(i + 1)
+    private final List<Integer> moves = new ArrayList<>();
     private int historyIndex = 0;
+    // reused for every update of the arrows
+    private final float[] arrowCoords = new float[4 * BestMoveArrowView.MAX_ARROWS];
+    private final int[] arrowGaps = new int[BestMoveArrowView.MAX_ARROWS];
+    // single worker, so fast scrolling never piles up threads
+    private final ExecutorService analysisExecutor = Executors.newSingleThreadExecutor();
+    private Future<?> pendingAnalysis;
+    private int analysisGeneration;
+    // created on first use, with its own engine so that cancelling the
+    // interactive analysis does not abort batch searches; the cache is shared
+    private GameAnalysis gameAnalysis;
+    private CachingEngine gameEngine;
+    private EvalGraphView evalGraph;
+    private EvalBarView evalBar;
+    private TextView infoView;
+    // results of the whole-game analysis, indexed like history
+    private AnalysisResult[] gameResults = new AnalysisResult[0];
+    private int gameGeneration;
 
     @Override
     protected int getContentLayoutId() {
@@ -23,13 +64,10 @@ public class AnalysisChessActivity extends ChessActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        if (hasInternetConnection()) {
-            engine = new StockfishClient();
-            engine.start();
-        } else {
-            engine = null;
-            Toast.makeText(this, R.string.no_internet, Toast.LENGTH_LONG).show();
-        }
+        // scrubbing through a game asks for the same positions again and again
+        engine = new CachingEngine(createEngine(), CACHE_ENTRIES, CACHE_BYTES,
+                new File(getCacheDir(), "analysis"));
+        engine.setMultiPv(MULTI_PV);
         arrowView = findViewById(R.id.best_move_arrow);
         if (arrowView != null) {
             arrowView.bringToFront();
@@ -39,12 +77,21 @@ public class AnalysisChessActivity extends ChessActivity {
         Button next = findViewById(R.id.btn_next_move);
         prev.setOnClickListener(v -> gotoPrevious());
         next.setOnClickListener(v -> gotoNext());
+        repeatWhileHeld(prev, this::gotoPrevious);
+        repeatWhileHeld(next, this::gotoNext);
+
+        evalGraph = findViewById(R.id.eval_graph);
+        evalBar = findViewById(R.id.eval_bar);
+        infoView = findViewById(R.id.tv_analysis_info);
+        Button analyse = findViewById(R.id.btn_analyse_game);
+        analyse.setOnClickListener(v -> analyseGame());
 
         // Wait until the board is fully initialized before grabbing the
         // starting position.  The base activity posts board setup on the
-        // GridLayout, so using the same queue ensures our code runs after it.
-        chessBoardGrid.post(() -> {
+        // board view, so using the same queue ensures our code runs after it.
+        boardView.post(() -> {
             history.clear();
+            moves.clear();
             history.add(getFEN());
             historyIndex = 0;
             updateBestMove();
@@ -54,7 +101,12 @@ public class AnalysisChessActivity extends ChessActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        analysisGeneration++;
+        gameGeneration++;
+        if (gameAnalysis != null) gameAnalysis.cancel();
+        if (gameEngine != null) gameEngine.stop();
         if (engine != null) engine.stop();
+        analysisExecutor.shutdownNow();
     }
 
     @Override
@@ -63,67 +115,205 @@ public class AnalysisChessActivity extends ChessActivity {
         // discard forward history if new move played
         while (history.size() > historyIndex + 1) {
             history.remove(history.size() - 1);
+            moves.remove(moves.size() - 1);
         }
         history.add(getFEN());
+        moves.add(getLastMove());
         historyIndex = history.size() - 1;
+        // the analysed game is not this game any more
+        cancelGameAnalysis();
         updateBestMove();
     }
 
+    // holding a button keeps stepping, to scrub through long games
+    private void repeatWhileHeld(Button button, Runnable step) {
+        Runnable repeat = new Runnable() {
+            @Override
+            public void run() {
+                step.run();
+                button.postDelayed(this, SCRUB_INTERVAL_MS);
+            }
+        };
+        button.setOnLongClickListener(v -> {
+            repeat.run();
+            return true;
+        });
+        button.setOnTouchListener((v, event) -> {
+            int action = event.getActionMasked();
+            if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+                v.removeCallbacks(repeat);
+            }
+            return false;
+        });
+    }
+
     private void gotoPrevious() {
-        if (historyIndex > 0) {
+        if (historyIndex > 0 && takeBackMove()) {
             historyIndex--;
-            loadFromFEN(history.get(historyIndex));
+            onHistoryIndexChanged();
             updateBestMove();
         }
     }
 
     private void gotoNext() {
         if (historyIndex < history.size() - 1) {
+            replayMove(moves.get(historyIndex));
             historyIndex++;
-            loadFromFEN(history.get(historyIndex));
+            onHistoryIndexChanged();
             updateBestMove();
         }
     }
 
-    private void updateBestMove() {
+    private void onHistoryIndexChanged() {
+        if (gameAnalysis != null) gameAnalysis.setFocus(historyIndex);
+        if (gameResults.length > 0) evalGraph.setCurrent(historyIndex);
+    }
+
+    /** Queues every position of the game, starting with the ones near the board. */
+    private void analyseGame() {
         if (engine == null) return;
-        new Thread(() -> {
-            String fen = getFEN();
-            String best = engine.getBestMove(fen, 10);
-            if (best == null || best.length() < 4) {
-                runOnUiThread(() -> arrowView.clearArrow());
-                return;
+        if (gameAnalysis == null) {
+            gameEngine = engine.withEngine(createEngine());
+            // LocalEngine runs one search at a time and already spreads it over
+            // the cores with its helper threads; a second worker would only wait
+            int workers = gameEngine.getEngine() instanceof LocalEngine ? 1 : GAME_ANALYSIS_WORKERS;
+            gameAnalysis = new GameAnalysis(gameEngine, workers, ANALYSIS_DEPTH);
+        }
+        int generation = ++gameGeneration;
+        List<String> fens = new ArrayList<>(history);
+        gameResults = new AnalysisResult[fens.size()];
+        evalGraph.reset(fens.size());
+        evalGraph.setCurrent(historyIndex);
+        gameAnalysis.start(fens, historyIndex, new GameAnalysis.Listener() {
+            @Override
+            public void onResult(int index, AnalysisResult result) {
+                runOnUiThread(() -> {
+                    if (generation == gameGeneration) onGameResult(index, result);
+                });
+            }
+
+            @Override
+            public void onFinished() {
+                runOnUiThread(() -> {
+                    if (generation == gameGeneration) {
+                        Toast.makeText(AnalysisChessActivity.this, "Analysis finished",
+                                Toast.LENGTH_SHORT).show();
+                    }
+                });
             }
-            int from = algebraicToIndex(best.substring(0, 2));
-            int to = algebraicToIndex(best.substring(2, 4));
-            runOnUiThread(() -> showArrow(from, to));
-        }).start();
+        });
     }
 
-    private void showArrow(int from, int to) {
-        FrameLayout fromCell = (FrameLayout) chessBoardGrid.getChildAt(from);
-        FrameLayout toCell = (FrameLayout) chessBoardGrid.getChildAt(to);
-        if (fromCell == null || toCell == null) {
+    private void onGameResult(int index, AnalysisResult result) {
+        gameResults[index] = result;
+        if (result == null) return;
+        evalGraph.setScore(index, GameAnalysis.whiteScore(history.get(index), result));
+        // the move into this position and the move out of it can now be judged
+        if (index > 0) {
+            evalGraph.setBlunder(index, GameAnalysis.isBlunder(history.get(index - 1),
+                    gameResults[index - 1], history.get(index), result));
+        }
+        if (index + 1 < gameResults.length) {
+            evalGraph.setBlunder(index + 1, GameAnalysis.isBlunder(history.get(index), result,
+                    history.get(index + 1), gameResults[index + 1]));
+        }
+    }
+
+    private void cancelGameAnalysis() {
+        if (gameResults.length == 0) return;
+        gameGeneration++;
+        if (gameAnalysis != null) gameAnalysis.cancel();
+        gameResults = new AnalysisResult[0];
+        evalGraph.reset(0);
+    }
+
+    /**
+     * Starts the streaming analysis of the current position; it deepens
+     * until the position changes. Every call bumps analysisGeneration and
+     * cancels the previous run, and an update is only shown if its
+     * generation is still the current one when it arrives.
+     */
+    private void updateBestMove() {
+        if (engine == null) return;
+        int generation = ++analysisGeneration;
+        cancelAnalysis();
+        String fen = getFEN();
+        AnalysisResult cached = engine.peek(fen, 1);
+        if (cached != null) {
+            showInfo(fen, cached);
+        } else {
             arrowView.clearArrow();
-            return;
+            evalBar.reset();
+            infoView.setText("");
+        }
+        pendingAnalysis = analysisExecutor.submit(() ->
+                engine.analyseInfinite(fen, info -> runOnUiThread(() -> {
+                    if (generation == analysisGeneration) showInfo(fen, info);
+                })));
+    }
+
+    private void cancelAnalysis() {
+        if (pendingAnalysis == null) return;
+        // drops a queued run and interrupts a running one; the engine may not
+        // notice the interrupt, so it is aborted as well
+        pendingAnalysis.cancel(true);
+        engine.cancel();
+        pendingAnalysis = null;
+    }
+
+    private void showInfo(String fen, AnalysisResult info) {
+        showArrows(info.getLines());
+        boolean white = !fen.contains(" b ");
+        int whiteScore = white ? info.getScore() : -info.getScore();
+        int whiteMate = white ? info.getMate() : -info.getMate();
+        evalBar.setEvaluation(whiteScore, whiteMate);
+
+        StringBuilder sb = new StringBuilder(96);
+        sb.append("depth ").append(info.getDepth()).append("  ");
+        if (whiteMate != 0) sb.append('#').append(whiteMate);
+        else sb.append(String.format(Locale.US, "%+.2f", whiteScore / 100.0));
+        if (info.getNodes() > 0) {
+            sb.append("  ").append(info.getNodes() / 1000).append(" kN  ")
+                    .append(info.getNps() / 1000).append(" kN/s");
+        }
+        sb.append("  ").append(String.join(" ", info.getPv()));
+        infoView.setText(sb);
+    }
+
+    private void showArrows(List<AnalysisResult> lines) {
+        int best = lineScore(lines.get(0));
+        int n = 0;
+        for (AnalysisResult line : lines) {
+            if (n == BestMoveArrowView.MAX_ARROWS) break;
+            if (cellCenters(line.getBestMove(), n)) {
+                arrowGaps[n] = best - lineScore(line);
+                n++;
+            }
         }
-        int[] boardPos = new int[2];
-        arrowView.getLocationOnScreen(boardPos);
-        int[] fromPos = new int[2];
-        int[] toPos = new int[2];
-        fromCell.getLocationOnScreen(fromPos);
-        toCell.getLocationOnScreen(toPos);
-        float sx = fromPos[0] - boardPos[0] + fromCell.getWidth() / 2f;
-        float sy = fromPos[1] - boardPos[1] + fromCell.getHeight() / 2f;
-        float ex = toPos[0] - boardPos[0] + toCell.getWidth() / 2f;
-        float ey = toPos[1] - boardPos[1] + toCell.getHeight() / 2f;
-        arrowView.setArrow(sx, sy, ex, ey);
-    }
-
-    private int algebraicToIndex(String sq) {
-        int file = sq.charAt(0) - 'a';
-        int rank = sq.charAt(1) - '1';
-        int row = 7 - rank;
-        return row * 8 + file;
+        if (n == 0) arrowView.clearArrow();
+        else arrowView.setArrows(arrowCoords, arrowGaps, n);
+    }
+
+    // mates rank above every score, shorter ones higher
+    private static int lineScore(AnalysisResult line) {
+        if (line.getMate() > 0) return 100_000 - line.getMate();
+        if (line.getMate() < 0) return -100_000 - line.getMate();
+        return line.getScore();
+    }
+
+    // writes the centers of the move's squares into arrowCoords at slot n
+    private boolean cellCenters(String move, int n) {
+        if (move == null || move.length() < 4) return false;
+        int from = Square.fromAlgebraic(move.substring(0, 2));
+        int to = Square.fromAlgebraic(move.substring(2, 4));
+        if (from == Square.NONE || to == Square.NONE) return false;
+        // both views share a parent, only their offset differs
+        float dx = boardView.getX() - arrowView.getX();
+        float dy = boardView.getY() - arrowView.getY();
+        arrowCoords[4 * n] = dx + boardView.squareCenterX(from);
+        arrowCoords[4 * n + 1] = dy + boardView.squareCenterY(from);
+        arrowCoords[4 * n + 2] = dx + boardView.squareCenterX(to);
+        arrowCoords[4 * n + 3] = dy + boardView.squareCenterY(to);
+        return true;
     }
 }
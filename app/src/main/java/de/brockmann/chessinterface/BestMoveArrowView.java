@@ -4,13 +4,27 @@ import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.Path;
 import android.util.AttributeSet;
 import android.view.View;
 
+/**
+ * Arrows for the engine's best lines. Each arrow is a filled outline built
+ * once when the arrows change, so onDraw only draws the prepared paths. The
+ * best line is green and widest; the more centipawns a line loses against
+ * it, the more it turns to red and the thinner it gets.
+ */
 public class BestMoveArrowView extends View {
-    private float startX, startY, endX, endY;
-    private boolean showArrow = false;
-    private final Paint paint = new Paint();
+
+    public static final int MAX_ARROWS = 5;
+    // gap at which an arrow is fully red and thinnest
+    private static final int MAX_GAP_CP = 300;
+
+    private final float[] coords = new float[4 * MAX_ARROWS];
+    private final int[] gaps = new int[MAX_ARROWS];
+    private final Path[] paths = new Path[MAX_ARROWS];
+    private final Paint[] paints = new Paint[MAX_ARROWS];
+    private int count;
 
     public BestMoveArrowView(Context context) {
         super(context);
@@ -28,40 +42,99 @@ public class BestMoveArrowView extends View {
     }
 
     private void init() {
-        paint.setColor(Color.GREEN);
-        paint.setStrokeWidth(8f);
-        paint.setStyle(Paint.Style.STROKE);
-        paint.setAntiAlias(true);
+        for (int i = 0; i < MAX_ARROWS; i++) {
+            paths[i] = new Path();
+            paints[i] = new Paint(Paint.ANTI_ALIAS_FLAG);
+            paints[i].setStyle(Paint.Style.FILL);
+        }
     }
 
     public void setArrow(float sx, float sy, float ex, float ey) {
-        startX = sx;
-        startY = sy;
-        endX = ex;
-        endY = ey;
-        showArrow = true;
-        invalidate();
+        coords[0] = sx;
+        coords[1] = sy;
+        coords[2] = ex;
+        coords[3] = ey;
+        gaps[0] = 0;
+        count = 1;
+        rebuild();
+    }
+
+    /**
+     * Shows {@code n} arrows, best first.
+     *
+     * @param coords start x, start y, end x, end y of each arrow
+     * @param gapsCp centipawns each line loses against the best one
+     */
+    public void setArrows(float[] coords, int[] gapsCp, int n) {
+        count = Math.min(n, MAX_ARROWS);
+        System.arraycopy(coords, 0, this.coords, 0, 4 * count);
+        System.arraycopy(gapsCp, 0, gaps, 0, count);
+        rebuild();
     }
 
     public void clearArrow() {
-        showArrow = false;
+        if (count == 0) return;
+        count = 0;
         invalidate();
     }
 
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        rebuild();
+    }
+
+    private void rebuild() {
+        float baseWidth = Math.max(8f, getWidth() / 40f);
+        for (int i = 0; i < count; i++) {
+            float t = Math.min(1f, Math.max(0, gaps[i]) / (float) MAX_GAP_CP);
+            paints[i].setColor(gapColor(t));
+            buildArrow(paths[i], coords[4 * i], coords[4 * i + 1], coords[4 * i + 2],
+                    coords[4 * i + 3], baseWidth * (1f - 0.5f * t));
+        }
+        invalidate();
+    }
+
+    // green over yellow to red, slightly transparent so pieces stay visible
+    private static int gapColor(float t) {
+        int red = t < 0.5f ? (int) (510 * t) : 255;
+        int green = t < 0.5f ? 200 : (int) (200 * (2 - 2 * t));
+        return Color.argb(190, red, green, 0);
+    }
+
+    // outline of shaft and head, using the unit direction instead of angles
+    private static void buildArrow(Path path, float sx, float sy, float ex, float ey, float width) {
+        path.rewind();
+        float dx = ex - sx;
+        float dy = ey - sy;
+        float len = (float) Math.sqrt(dx * dx + dy * dy);
+        if (len < 1f) return;
+        float ux = dx / len;
+        float uy = dy / len;
+        // normal to the arrow
+        float nx = -uy;
+        float ny = ux;
+        float half = width / 2;
+        float headLen = Math.min(width * 2.5f, len / 2);
+        float headHalf = width * 1.3f;
+        float neckX = ex - ux * headLen;
+        float neckY = ey - uy * headLen;
+        path.moveTo(sx + nx * half, sy + ny * half);
+        path.lineTo(neckX + nx * half, neckY + ny * half);
+        path.lineTo(neckX + nx * headHalf, neckY + ny * headHalf);
+        path.lineTo(ex, ey);
+        path.lineTo(neckX - nx * headHalf, neckY - ny * headHalf);
+        path.lineTo(neckX - nx * half, neckY - ny * half);
+        path.lineTo(sx - nx * half, sy - ny * half);
+        path.close();
+    }
+
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
-        if (!showArrow) return;
-        canvas.drawLine(startX, startY, endX, endY, paint);
-        float dx = endX - startX;
-        float dy = endY - startY;
-        double angle = Math.atan2(dy, dx);
-        float len = 30f;
-        float x1 = endX - (float) (len * Math.cos(angle - Math.PI / 6));
-        float y1 = endY - (float) (len * Math.sin(angle - Math.PI / 6));
-        float x2 = endX - (float) (len * Math.cos(angle + Math.PI / 6));
-        float y2 = endY - (float) (len * Math.sin(angle + Math.PI / 6));
-        canvas.drawLine(endX, endY, x1, y1, paint);
-        canvas.drawLine(endX, endY, x2, y2, paint);
+        // weakest first so the best arrow ends up on top
+        for (int i = count - 1; i >= 0; i--) {
+            canvas.drawPath(paths[i], paints[i]);
+        }
     }
 }
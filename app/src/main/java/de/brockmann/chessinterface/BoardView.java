@@ -0,0 +1,376 @@
+package de.brockmann.chessinterface;
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ValueAnimator;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.animation.DecelerateInterpolator;
+
+import java.util.Arrays;
+
+import de.brockmann.chessinterface.core.Piece;
+import de.brockmann.chessinterface.core.Position;
+import de.brockmann.chessinterface.core.Square;
+
+/**
+ * The whole chess board in one view: squares, highlights and pieces are
+ * drawn in a single onDraw, pieces blitted from the shared
+ * {@link PieceAtlas}. Dragging a piece is handled here as well; the activity only decides
+ * whether a piece may be picked up and what a drop means.
+ *
+ * <p>Squares are numbered like in the core, 0 = a8 to 63 = h1. A change
+ * that shows nothing new, e.g. setting the piece already on a square, does
+ * not invalidate; any other redraws the whole board, which is one pass over
+ * 64 squares and at most 32 bitmaps.
+ *
+ * <p>Moves can be animated and flips are animated as one rotation of the
+ * canvas, with every piece turned back so it stays upright. Both run on
+ * two animators created once; a frame only updates a float and redraws.
+ */
+public class BoardView extends View {
+
+    /** Receives the drags of the user. */
+    public interface Listener {
+        /** Whether the piece on {@code square} may be dragged. */
+        boolean onPiecePicked(int square);
+
+        /**
+         * The piece from {@code from} was let go over {@code to}, which is
+         * {@link Square#NONE} off the board or for a cancelled drag.
+         */
+        void onPieceDropped(int from, int to);
+    }
+
+    private static final int LIGHT = Color.parseColor("#FFF8DC");
+    private static final int DARK = Color.parseColor("#8B4513");
+    private static final int TARGET_COLOR = Color.argb(110, 0, 120, 0);
+    private static final int HOVER_TINT = Color.argb(100, 255, 255, 0);
+    // dot on an empty target and ring around a capture, relative to the square
+    private static final float DOT_RADIUS = 0.16f;
+    private static final float RING_WIDTH = 0.08f;
+    // space around a piece, like the padding of the former image views
+    private static final float PIECE_PADDING_DP = 4;
+    private static final long MOVE_MS = 180;
+    private static final long FLIP_MS = 300;
+
+    private final int[] pieces = new int[64];
+    private final Paint lightPaint = new Paint();
+    private final Paint darkPaint = new Paint();
+    private final Paint targetPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint capturePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint hoverPaint = new Paint();
+    private final Paint spritePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private float squareSize;
+    private PieceAtlas atlas;
+    private int piecePadding;
+    private boolean flipped;
+    private boolean piecesMirrored;
+    private long targets;
+    private Listener listener;
+
+    // drag state; dragFrom is NONE while nothing is dragged
+    private int dragFrom = Square.NONE;
+    private int hoverSquare = Square.NONE;
+    private float dragX;
+    private float dragY;
+
+    private final ValueAnimator moveAnimator = ValueAnimator.ofFloat(0f, 1f);
+    private final ValueAnimator flipAnimator = ValueAnimator.ofFloat(0f, 1f);
+    // squares of the animated pieces: the moved one and the rook when castling
+    private final int[] animFrom = {Square.NONE, Square.NONE};
+    private final int[] animTo = {Square.NONE, Square.NONE};
+    private float moveFraction;
+    // current rotation of the board in degrees, animated from flipStart to 0
+    private float rotation;
+    private float flipStart;
+
+    public BoardView(Context context) {
+        super(context);
+        init();
+    }
+
+    public BoardView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init();
+    }
+
+    public BoardView(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+        init();
+    }
+
+    private void init() {
+        Arrays.fill(pieces, Piece.NONE);
+        lightPaint.setColor(LIGHT);
+        darkPaint.setColor(DARK);
+        targetPaint.setColor(TARGET_COLOR);
+        capturePaint.setColor(TARGET_COLOR);
+        capturePaint.setStyle(Paint.Style.STROKE);
+        hoverPaint.setColor(HOVER_TINT);
+        piecePadding = Math.round(PIECE_PADDING_DP * getResources().getDisplayMetrics().density);
+
+        moveAnimator.setDuration(MOVE_MS);
+        moveAnimator.setInterpolator(new DecelerateInterpolator());
+        moveAnimator.addUpdateListener(a -> {
+            moveFraction = a.getAnimatedFraction();
+            invalidate();
+        });
+        moveAnimator.addListener(new AnimatorListenerAdapter() {
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                animFrom[0] = animTo[0] = animFrom[1] = animTo[1] = Square.NONE;
+                invalidate();
+            }
+        });
+        flipAnimator.setDuration(FLIP_MS);
+        flipAnimator.setInterpolator(new DecelerateInterpolator());
+        flipAnimator.addUpdateListener(a -> {
+            rotation = flipStart * (1f - a.getAnimatedFraction());
+            invalidate();
+        });
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Shows {@code pos}, e.g. after a new game, a loaded FEN or a step
+     * through the game. Redraws only if some square's piece differs from
+     * the one shown.
+     */
+    public void setPosition(Position pos) {
+        for (int sq = 0; sq < 64; sq++) setPiece(sq, pos.pieceAt(sq));
+    }
+
+    /** Puts {@code piece} on {@code square}, {@link Piece#NONE} empties it. */
+    public void setPiece(int square, int piece) {
+        if (pieces[square] == piece) return;
+        // the animated piece would land on something else
+        if ((square == animTo[0] || square == animTo[1]) && moveAnimator.isStarted()) {
+            moveAnimator.end();
+        }
+        pieces[square] = piece;
+        invalidate();
+    }
+
+    /**
+     * Marks the squares set in {@code mask}, bit i for square i, as targets
+     * of the dragged piece. Only these are tinted while hovered.
+     */
+    public void setTargets(long mask) {
+        if (targets == mask) return;
+        targets = mask;
+        invalidate();
+    }
+
+    /**
+     * Slides the pieces now on {@code to} and {@code secondTo} in from
+     * {@code from} and {@code secondFrom}. Call it after the move is on the
+     * board; the second pair is the rook when castling, else
+     * {@link Square#NONE}.
+     */
+    public void animateMove(int from, int to, int secondFrom, int secondTo) {
+        if (moveAnimator.isStarted()) moveAnimator.end();
+        if (squareSize <= 0) return;
+        animFrom[0] = from;
+        animTo[0] = to;
+        animFrom[1] = secondFrom;
+        animTo[1] = secondTo;
+        moveFraction = 0f;
+        moveAnimator.start();
+    }
+
+    /** Shows the board from Black's side, turning it around once laid out. */
+    public void setFlipped(boolean flipped) {
+        if (this.flipped == flipped) return;
+        this.flipped = flipped;
+        if (squareSize > 0) {
+            // the new orientation turned by 180° looks like the old one
+            flipAnimator.cancel();
+            flipStart = rotation - 180f;
+            rotation = flipStart;
+            flipAnimator.start();
+        }
+        invalidate();
+    }
+
+    /** Draws every piece upside down, for two players facing each other. */
+    public void setPiecesMirrored(boolean mirrored) {
+        if (piecesMirrored == mirrored) return;
+        piecesMirrored = mirrored;
+        invalidate();
+    }
+
+    /** Center of {@code square} in view coordinates. */
+    public float squareCenterX(int square) {
+        return (displayIndex(square) % 8 + 0.5f) * squareSize;
+    }
+
+    public float squareCenterY(int square) {
+        return (displayIndex(square) / 8 + 0.5f) * squareSize;
+    }
+
+    private int displayIndex(int square) {
+        return flipped ? 63 - square : square;
+    }
+
+    private int squareAt(float x, float y) {
+        if (squareSize <= 0 || x < 0 || y < 0) return Square.NONE;
+        int col = (int) (x / squareSize);
+        int row = (int) (y / squareSize);
+        if (col > 7 || row > 7) return Square.NONE;
+        return displayIndex(row * 8 + col);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        int size = Math.min(getMeasuredWidth(), getMeasuredHeight());
+        setMeasuredDimension(size, size);
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        squareSize = Math.min(w, h) / 8f;
+        atlas = PieceAtlas.get(getContext(), (int) squareSize - 2 * piecePadding);
+        capturePaint.setStrokeWidth(squareSize * RING_WIDTH);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        if (moveAnimator.isStarted()) moveAnimator.end();
+        if (flipAnimator.isStarted()) flipAnimator.end();
+        super.onDetachedFromWindow();
+    }
+
+    // a theme switch without recreating the activity needs other sprites
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        atlas = PieceAtlas.get(getContext(), (int) squareSize - 2 * piecePadding);
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (rotation != 0) {
+            canvas.save();
+            canvas.rotate(rotation, getWidth() / 2f, getHeight() / 2f);
+        }
+        for (int sq = 0; sq < 64; sq++) {
+            int d = displayIndex(sq);
+            float left = (d % 8) * squareSize;
+            float top = (d / 8) * squareSize;
+            float right = left + squareSize;
+            float bottom = top + squareSize;
+            boolean light = (Square.row(sq) + Square.col(sq)) % 2 == 0;
+            canvas.drawRect(left, top, right, bottom, light ? lightPaint : darkPaint);
+            boolean target = (targets & (1L << sq)) != 0;
+            if (target && sq == hoverSquare) canvas.drawRect(left, top, right, bottom, hoverPaint);
+            float cx = left + squareSize / 2;
+            float cy = top + squareSize / 2;
+            if (sq != dragFrom && sq != animTo[0] && sq != animTo[1]) {
+                drawPiece(canvas, pieces[sq], cx, cy);
+            }
+            if (target) {
+                if (pieces[sq] == Piece.NONE) {
+                    canvas.drawCircle(cx, cy, squareSize * DOT_RADIUS, targetPaint);
+                } else {
+                    canvas.drawCircle(cx, cy, (squareSize - capturePaint.getStrokeWidth()) / 2,
+                            capturePaint);
+                }
+            }
+        }
+        for (int i = 0; i < animTo.length; i++) {
+            if (animTo[i] == Square.NONE) continue;
+            float x = squareCenterX(animFrom[i]);
+            float y = squareCenterY(animFrom[i]);
+            x += (squareCenterX(animTo[i]) - x) * moveFraction;
+            y += (squareCenterY(animTo[i]) - y) * moveFraction;
+            drawPiece(canvas, pieces[animTo[i]], x, y);
+        }
+        if (rotation != 0) canvas.restore();
+        if (dragFrom != Square.NONE) drawPiece(canvas, pieces[dragFrom], dragX, dragY);
+    }
+
+    private void drawPiece(Canvas canvas, int piece, float cx, float cy) {
+        if (piece == Piece.NONE || atlas == null) return;
+        float left = cx - atlas.getSize() / 2f;
+        float top = cy - atlas.getSize() / 2f;
+        boolean transformed = piecesMirrored || rotation != 0;
+        if (transformed) {
+            canvas.save();
+            // keeps the piece upright while the board turns
+            if (rotation != 0) canvas.rotate(-rotation, cx, cy);
+            if (piecesMirrored) canvas.scale(1f, -1f, cx, cy);
+        }
+        atlas.draw(canvas, piece, left, top, spritePaint);
+        if (transformed) canvas.restore();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN: {
+                // squares are not where they seem while the board turns
+                if (flipAnimator.isRunning()) return false;
+                int sq = squareAt(event.getX(), event.getY());
+                if (sq == Square.NONE || pieces[sq] == Piece.NONE) return false;
+                if (listener == null || !listener.onPiecePicked(sq)) return false;
+                dragFrom = sq;
+                dragX = event.getX();
+                dragY = event.getY();
+                setHover(sq);
+                invalidate();
+                return true;
+            }
+            case MotionEvent.ACTION_MOVE:
+                if (dragFrom == Square.NONE) return false;
+                dragX = event.getX();
+                dragY = event.getY();
+                invalidate();
+                setHover(squareAt(dragX, dragY));
+                return true;
+            case MotionEvent.ACTION_UP:
+                if (dragFrom == Square.NONE) return false;
+                performClick();
+                endDrag(squareAt(event.getX(), event.getY()));
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                if (dragFrom == Square.NONE) return false;
+                endDrag(Square.NONE);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+
+    private void setHover(int square) {
+        if (square == hoverSquare) return;
+        hoverSquare = square;
+        invalidate();
+    }
+
+    private void endDrag(int to) {
+        int from = dragFrom;
+        invalidate();
+        setHover(Square.NONE);
+        dragFrom = Square.NONE;
+        if (listener != null) listener.onPieceDropped(from, to);
+    }
+}
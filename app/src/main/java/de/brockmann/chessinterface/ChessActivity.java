@@ -1,10 +1,7 @@
 package de.brockmann.chessinterface;
 
-import android.content.ClipData;
-import android.content.ClipDescription;
 import android.content.Intent;
-import android.graphics.Color;
-import android.graphics.PorterDuff;
+import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.content.Context;
 import android.net.ConnectivityManager;
@@ -12,60 +9,47 @@ import android.net.Network;
 import android.net.NetworkCapabilities;
 import android.net.NetworkInfo;
 import android.os.Build;
-import android.view.DragEvent;
-import android.view.Gravity;
 import android.view.View;
 import android.widget.TextView;
 import android.widget.Button;
-import android.widget.FrameLayout;
-import android.widget.GridLayout;
 import android.widget.ImageView;
 import android.widget.Toast;
 
 import androidx.annotation.LayoutRes;
 import androidx.appcompat.app.AppCompatActivity;
 
+import de.brockmann.chessinterface.core.GameState;
+import de.brockmann.chessinterface.core.Move;
+import de.brockmann.chessinterface.core.MoveGenerator;
+import de.brockmann.chessinterface.core.Piece;
+import de.brockmann.chessinterface.core.Position;
+import de.brockmann.chessinterface.core.RepetitionHistory;
+import de.brockmann.chessinterface.core.Square;
+import de.brockmann.chessinterface.engine.ChessEngine;
+import de.brockmann.chessinterface.engine.LocalEngine;
+import de.brockmann.chessinterface.engine.Tablebase;
+
 public abstract class ChessActivity extends AppCompatActivity {
 
-    private static final int BOARD_SIZE = 8;
-    protected GridLayout chessBoardGrid;
+    protected BoardView boardView;
     private View gameEndOverlay;
     private TextView gameEndMessage;
     private View drawOfferOverlay;
     private View resignConfirmOverlay;
 
-    private final String[] initialBoardSetup = {
-            "r", "n", "b", "q", "k", "b", "n", "r",
-            "p", "p", "p", "p", "p", "p", "p", "p",
-            " ", " ", " ", " ", " ", " ", " ", " ",
-            " ", " ", " ", " ", " ", " ", " ", " ",
-            " ", " ", " ", " ", " ", " ", " ", " ",
-            " ", " ", " ", " ", " ", " ", " ", " ",
-            "P", "P", "P", "P", "P", "P", "P", "P",
-            "R", "N", "B", "Q", "K", "B", "N", "R"
-    };
-
-    private String[] currentBoardState;
-
-    // track fullmove number for FEN generation
-    protected int fullmoveNumber = 1;
+    // Spielzustand: Bitboards, Rochaderechte, En-Passant-Feld und Zugzähler
+    private final Position position = new Position();
+    private final int[] moveBuffer = new int[MoveGenerator.MAX_MOVES];
+    // Zielfelder der gerade gezogenen Figur, einmal beim Aufnehmen berechnet
+    private long legalTargets;
 
     // --- NEUE VARIABLEN FÜR SPIELZUSTAND ---
     protected char currentPlayerTurn; // 'W' für Weiß, 'B' für Schwarz
 
-    private int enPassantTarget = -1;
-
-    // Castling state
-    private boolean whiteKingMoved = false;
-    private boolean blackKingMoved = false;
-    private boolean whiteKingsideRookMoved = false;
-    private boolean whiteQueensideRookMoved = false;
-    private boolean blackKingsideRookMoved = false;
-    private boolean blackQueensideRookMoved = false;
-
     // Draw detection state
-    private int halfmoveClock = 0;
-    private final java.util.Map<String, Integer> positionCount = new java.util.HashMap<>();
+    private final RepetitionHistory repetitions = new RepetitionHistory();
+    // last endgame table verdict shown, so it is announced only when it changes
+    private int tablebaseVerdict = Tablebase.UNKNOWN;
 
     @LayoutRes
     protected abstract int getContentLayoutId();
@@ -78,8 +62,11 @@ public abstract class ChessActivity extends AppCompatActivity {
             layoutId = R.layout.chess_activity;
         }
         setContentView(layoutId);
+        // exact endgame results, ready long before the game gets there
+        Tablebase.generateInBackground();
 
-        chessBoardGrid = findViewById(R.id.chess_board_grid);
+        boardView = findViewById(R.id.board_view);
+        boardView.setListener(new BoardListener());
         gameEndOverlay = findViewById(R.id.game_end_overlay);
         drawOfferOverlay = findViewById(R.id.draw_offer_overlay);
         resignConfirmOverlay = findViewById(R.id.resign_confirm_overlay);
@@ -113,6 +100,7 @@ public abstract class ChessActivity extends AppCompatActivity {
             Button no = resignConfirmOverlay.findViewById(R.id.btn_resign_no);
             yes.setOnClickListener(v -> {
                 hideResignConfirmOverlay();
+                onResigned();
                 String winner = currentPlayerTurn == 'W' ? "Black" : "White";
                 showGameEndOverlay(winner + " won by resignation");
             });
@@ -120,233 +108,105 @@ public abstract class ChessActivity extends AppCompatActivity {
         }
         setupDummyButtons();
 
-        chessBoardGrid.post(this::initializeBoard);
+        boardView.post(this::initializeBoard);
     }
 
     private void initializeBoard() {
         hideGameEndOverlay();
-        currentBoardState = initialBoardSetup.clone();
+        position.loadFromFEN(Position.START_FEN);
         // --- NEU: Startspieler festlegen ---
         currentPlayerTurn = 'W';
-        fullmoveNumber = 1;
-        enPassantTarget = -1;
-        whiteKingMoved = false;
-        blackKingMoved = false;
-        whiteKingsideRookMoved = false;
-        whiteQueensideRookMoved = false;
-        blackKingsideRookMoved = false;
-        blackQueensideRookMoved = false;
-        halfmoveClock = 0;
-        positionCount.clear();
+        repetitions.clear();
         Toast.makeText(this, "White's turn", Toast.LENGTH_SHORT).show();
 
-        setupBoardCells();
-        placePiecesOnBoard();
+        boardView.setPosition(position);
         recordCurrentPosition();
+        onNewGame();
     }
 
-    private void setupBoardCells() {
-        int cellSize = chessBoardGrid.getWidth() / BOARD_SIZE;
-        chessBoardGrid.removeAllViews();
-        chessBoardGrid.setColumnCount(BOARD_SIZE);
-        chessBoardGrid.setRowCount(BOARD_SIZE);
-
-        for (int i = 0; i < BOARD_SIZE * BOARD_SIZE; i++) {
-            FrameLayout cell = new FrameLayout(this);
-            GridLayout.LayoutParams lp = new GridLayout.LayoutParams();
-            lp.width = cellSize;
-            lp.height = cellSize;
-            lp.columnSpec = GridLayout.spec(i % BOARD_SIZE);
-            lp.rowSpec = GridLayout.spec(i / BOARD_SIZE);
-            cell.setLayoutParams(lp);
-
-            cell.setBackgroundColor(getCellColor(i));
-            cell.setOnDragListener(new ChessDragListener());
-            cell.setTag(i);
-            chessBoardGrid.addView(cell);
-        }
+    /** Called once a new game is on the board. */
+    protected void onNewGame() {
     }
 
-    private void placePiecesOnBoard() {
-        for (int i = 0; i < currentBoardState.length; i++) {
-            String code = currentBoardState[i];
-            if (" ".equals(code)) continue;
-
-            ImageView piece = new ImageView(this);
-            int resId = getDrawableIdForPiece(code);
-            if (resId == 0) continue;
-
-            piece.setImageResource(resId);
-            piece.setScaleType(ImageView.ScaleType.CENTER_INSIDE);
-            piece.setTag(code);
-
-            // --- GEÄNDERT: OnLongClickListener prüft jetzt, ob der Spieler am Zug ist ---
-            piece.setOnLongClickListener(v -> {
-                FrameLayout parentCell = (FrameLayout) v.getParent();
-                int startPosition = (int) parentCell.getTag();
-                String pieceCode = currentBoardState[startPosition];
-
-                // Nur das Bewegen erlauben, wenn die Farbe der Figur mit dem aktuellen Spieler übereinstimmt
-                if (getPieceColor(pieceCode.charAt(0)) != currentPlayerTurn) {
-                    Toast.makeText(ChessActivity.this, "Not your turn!", Toast.LENGTH_SHORT).show();
-                    return false; // Drag-Vorgang wird nicht gestartet
-                }
-
-                ClipData.Item item = new ClipData.Item(String.valueOf(startPosition));
-                ClipData dragData = new ClipData(
-                        "piece",
-                        new String[]{ClipDescription.MIMETYPE_TEXT_PLAIN},
-                        item
-                );
-
-                View.DragShadowBuilder shadowBuilder = new View.DragShadowBuilder(v);
-                v.startDragAndDrop(dragData, shadowBuilder, v, 0);
-                v.setVisibility(View.INVISIBLE);
-                return true;
-            });
+    /** Called when the player to move resigns, before the result is shown. */
+    protected void onResigned() {
+    }
 
-            FrameLayout cell = (FrameLayout) chessBoardGrid.getChildAt(i);
-            if (cell != null) {
-                FrameLayout.LayoutParams p = new FrameLayout.LayoutParams(
-                        FrameLayout.LayoutParams.MATCH_PARENT,
-                        FrameLayout.LayoutParams.MATCH_PARENT,
-                        Gravity.CENTER);
-                int pad = (int) (4 * getResources().getDisplayMetrics().density);
-                piece.setPadding(pad, pad, pad, pad);
-                cell.addView(piece, p);
-            }
-        }
+    /** Whether the user may move the pieces of the side to move, e.g. not while an engine thinks. */
+    protected boolean isUserTurn() {
+        return true;
     }
 
-    private class ChessDragListener implements View.OnDragListener {
-        private final int highlightColor = Color.argb(100, 255, 255, 0);
+    /** Whether moving from {@code from} to {@code to} is legal in the current position. */
+    protected boolean isLegalMove(int from, int to) {
+        if (from == Square.NONE || to == Square.NONE) return false;
+        return (MoveGenerator.legalTargets(position, from, moveBuffer) & (1L << to)) != 0;
+    }
 
+    private void highlightLegalTargets() {
+        boardView.setTargets(legalTargets);
+    }
+
+    private class BoardListener implements BoardView.Listener {
         @Override
-        public boolean onDrag(View v, DragEvent event) {
-            FrameLayout targetCell = (FrameLayout) v;
-            View draggedView = (View) event.getLocalState();
-
-            switch (event.getAction()) {
-                case DragEvent.ACTION_DRAG_STARTED:
-                    return event.getClipDescription().hasMimeType(ClipDescription.MIMETYPE_TEXT_PLAIN);
-                case DragEvent.ACTION_DRAG_ENTERED:
-                    targetCell.getBackground().setColorFilter(highlightColor, PorterDuff.Mode.SRC_ATOP);
-                    targetCell.invalidate();
-                    return true;
-                case DragEvent.ACTION_DRAG_EXITED:
-                    targetCell.getBackground().clearColorFilter();
-                    targetCell.invalidate();
-                    return true;
-                case DragEvent.ACTION_DROP:
-                    ClipData.Item item = event.getClipData().getItemAt(0);
-                    int startPosition = Integer.parseInt(item.getText().toString());
-                    int endPosition = (int) targetCell.getTag();
-
-                    if (isMoveValid(startPosition, endPosition)) {
-                        performMove(startPosition, endPosition, (ImageView) draggedView);
-                    }
-                    draggedView.setVisibility(View.VISIBLE);
-                    return true;
-                case DragEvent.ACTION_DRAG_ENDED:
-                    targetCell.getBackground().clearColorFilter();
-                    targetCell.invalidate();
-                    if (!event.getResult()) {
-                        draggedView.setVisibility(View.VISIBLE);
-                    }
-                    return true;
-                default:
-                    break;
+        public boolean onPiecePicked(int square) {
+            int pieceCode = position.pieceAt(square);
+            // Nur das Bewegen erlauben, wenn die Farbe der Figur mit dem aktuellen Spieler übereinstimmt
+            if (pieceCode == Piece.NONE || Piece.color(pieceCode) != position.sideToMove()
+                    || !isUserTurn()) {
+                Toast.makeText(ChessActivity.this, "Not your turn!", Toast.LENGTH_SHORT).show();
+                return false; // Drag-Vorgang wird nicht gestartet
             }
-            return false;
+            legalTargets = MoveGenerator.legalTargets(position, square, moveBuffer);
+            highlightLegalTargets();
+            return true;
+        }
+
+        @Override
+        public void onPieceDropped(int from, int to) {
+            // the targets were generated at drag start, a bit test is enough
+            boolean legal = to != Square.NONE && (legalTargets & (1L << to)) != 0;
+            legalTargets = 0;
+            highlightLegalTargets();
+            if (legal) performMove(from, to);
         }
     }
 
     // --- NEUE METHODE: Führt den Zug aus und aktualisiert alles ---
-    protected void performMove(int from, int to, ImageView pieceView) {
-        // UI aktualisieren
-        FrameLayout sourceCell = (FrameLayout) chessBoardGrid.getChildAt(from);
-        FrameLayout targetCell = (FrameLayout) chessBoardGrid.getChildAt(to);
-
-        String piece = currentBoardState[from];
-        String targetBefore = currentBoardState[to];
-        boolean enPassantCapture = false;
-        // Detect and perform En Passant
-        if (piece.equalsIgnoreCase("p") &&
-                " ".equals(targetBefore) &&
-                enPassantTarget != -1 &&
-                Math.abs(enPassantTarget - to) == 8
-        ) {
-            FrameLayout enPassantTargetCell = (FrameLayout) chessBoardGrid.getChildAt(enPassantTarget);
-            enPassantTargetCell.removeAllViews();
-            enPassantCapture = true;
-        }
+    protected void performMove(int from, int to) {
+        performMove(from, to, Piece.QUEEN, false);
+    }
 
-        sourceCell.removeView(pieceView);
-        if (targetCell.getChildCount() > 0) {
-            targetCell.removeAllViews();
-        }
-        targetCell.addView(pieceView);
+    /**
+     * Plays a move; a pawn reaching the last rank becomes {@code promotionType}.
+     * Moves the user did not drag, like engine replies, should be {@code animate}d.
+     */
+    protected void performMove(int from, int to, int promotionType, boolean animate) {
+        int piece = position.pieceAt(from);
+        boolean isPawn = Piece.type(piece) == Piece.PAWN;
+        boolean enPassant = isPawn && to == position.epSquare();
+        boolean castling = Piece.type(piece) == Piece.KING && Math.abs(to - from) == 2;
 
         // Internen Zustand aktualisieren
-
-        // Handle castling rook movement
-        if (piece.equalsIgnoreCase("k") && Math.abs(to - from) == 2) {
+        position.makeMove(Move.encode(from, to, promotionType, Move.FLAG_NORMAL));
+
+        // UI aktualisieren: nur die betroffenen Felder
+        boardView.setPiece(from, Piece.NONE);
+        boardView.setPiece(to, position.pieceAt(to));
+        if (enPassant) {
+            int capPos = Piece.color(piece) == Piece.WHITE ? to + 8 : to - 8;
+            boardView.setPiece(capPos, Piece.NONE);
+        }
+        int rookFrom = Square.NONE;
+        int rookTo = Square.NONE;
+        if (castling) {
             boolean kingside = to > from;
-            int rookFrom = kingside ? from + 3 : from - 4;
-            int rookTo = kingside ? from + 1 : from - 1;
-
-            FrameLayout rookSource = (FrameLayout) chessBoardGrid.getChildAt(rookFrom);
-            FrameLayout rookTarget = (FrameLayout) chessBoardGrid.getChildAt(rookTo);
-            if (rookSource.getChildCount() > 0) {
-                ImageView rookView = (ImageView) rookSource.getChildAt(0);
-                rookSource.removeView(rookView);
-                if (rookTarget.getChildCount() > 0) rookTarget.removeAllViews();
-                rookTarget.addView(rookView);
-            }
-
-            currentBoardState[rookTo] = currentBoardState[rookFrom];
-            currentBoardState[rookFrom] = " ";
-
-            // update rook moved flags
-            if (piece.equals("K")) {
-                if (kingside) whiteKingsideRookMoved = true; else whiteQueensideRookMoved = true;
-            } else if (piece.equals("k")) {
-                if (kingside) blackKingsideRookMoved = true; else blackQueensideRookMoved = true;
-            }
-        }
-
-        currentBoardState[to] = piece;
-        currentBoardState[from] = " ";
-        if (enPassantCapture) {
-            int capPos = piece.equals("P") ? to + 8 : to - 8;
-            if (capPos >= 0 && capPos < 64) currentBoardState[capPos] = " ";
-        }
-
-        // update moved flags
-        if (piece.equals("K")) whiteKingMoved = true;
-        if (piece.equals("k")) blackKingMoved = true;
-        if (piece.equals("R")) {
-            if (from == 56) whiteQueensideRookMoved = true;
-            if (from == 63) whiteKingsideRookMoved = true;
-        }
-        if (piece.equals("r")) {
-            if (from == 0) blackQueensideRookMoved = true;
-            if (from == 7) blackKingsideRookMoved = true;
-        }
-
-        // En Passant possible in next move
-        enPassantTarget = -1;
-        if (piece.equalsIgnoreCase("p") && Math.abs(to - from) == 16) {
-            enPassantTarget = to;
-        }
-
-        boolean isPawnMove = piece.equalsIgnoreCase("p");
-        boolean isCapture = !" ".equals(targetBefore) || enPassantCapture;
-        if (isPawnMove || isCapture) {
-            halfmoveClock = 0;
-        } else {
-            halfmoveClock++;
+            rookFrom = kingside ? from + 3 : from - 4;
+            rookTo = kingside ? from + 1 : from - 1;
+            boardView.setPiece(rookFrom, Piece.NONE);
+            boardView.setPiece(rookTo, position.pieceAt(rookTo));
         }
+        if (animate) boardView.animateMove(from, to, rookFrom, rookTo);
 
         // Spieler wechseln
         switchPlayer();
@@ -357,11 +217,8 @@ public abstract class ChessActivity extends AppCompatActivity {
     protected abstract void switchPlayer();
 
     protected void toggleCurrentPlayer() {
-        boolean wasBlack = currentPlayerTurn == 'B';
-        currentPlayerTurn = (currentPlayerTurn == 'W') ? 'B' : 'W';
-        if (wasBlack && currentPlayerTurn == 'W') {
-            fullmoveNumber++;
-        }
+        // the position already switched sides in makeMove, just mirror it
+        currentPlayerTurn = position.whiteToMove() ? 'W' : 'B';
         Toast.makeText(this,
                 (currentPlayerTurn == 'W' ? "White's" : "Black's") + " turn",
                 Toast.LENGTH_SHORT).show();
@@ -369,340 +226,52 @@ public abstract class ChessActivity extends AppCompatActivity {
 
     /** Returns the current board state as FEN string for the engine. */
     protected String getFEN() {
-        StringBuilder sb = new StringBuilder();
-        for (int row = 0; row < BOARD_SIZE; row++) {
-            int empty = 0;
-            for (int col = 0; col < BOARD_SIZE; col++) {
-                String piece = currentBoardState[row * BOARD_SIZE + col];
-                if (" ".equals(piece)) {
-                    empty++;
-                } else {
-                    if (empty > 0) { sb.append(empty); empty = 0; }
-                    sb.append(piece);
-                }
-            }
-            if (empty > 0) sb.append(empty);
-            if (row < BOARD_SIZE - 1) sb.append('/');
-        }
-
-        sb.append(' ');
-        sb.append(currentPlayerTurn == 'W' ? 'w' : 'b');
-        sb.append(' ');
-
-        StringBuilder castling = new StringBuilder();
-        if (!whiteKingMoved && !whiteKingsideRookMoved && "R".equals(currentBoardState[63]))
-            castling.append('K');
-        if (!whiteKingMoved && !whiteQueensideRookMoved && "R".equals(currentBoardState[56]))
-            castling.append('Q');
-        if (!blackKingMoved && !blackKingsideRookMoved && "r".equals(currentBoardState[7]))
-            castling.append('k');
-        if (!blackKingMoved && !blackQueensideRookMoved && "r".equals(currentBoardState[0]))
-            castling.append('q');
-        sb.append(castling.length() == 0 ? "-" : castling.toString());
-        sb.append(' ');
-
-        if (enPassantTarget == -1) {
-            sb.append('-');
-        } else {
-            int r = enPassantTarget / BOARD_SIZE;
-            int c = enPassantTarget % BOARD_SIZE;
-            sb.append((char)('a' + c));
-            sb.append((char)('8' - r));
-        }
-
-        sb.append(' ');
-        sb.append(halfmoveClock);
-        sb.append(' ');
-        sb.append(fullmoveNumber);
-        return sb.toString();
-    }
-
-
-    // --- Zugvalidierung: prüft zunächst pseudolegal und danach, ob der eigene
-    // König im Schach bleiben würde ---
-    private boolean isMoveValid(int startPos, int endPos) {
-        if (!isPseudoLegalMove(startPos, endPos)) return false;
-        return !wouldLeaveKingInCheck(startPos, endPos);
+        return position.getFEN();
     }
 
-    // Pseudolegale Zugvalidierung ohne Berücksichtigung von Schach
-    private boolean isPseudoLegalMove(int startPos, int endPos) {
-        if (startPos == endPos) return false;
-
-        String pieceCode = currentBoardState[startPos];
-        String targetCode = currentBoardState[endPos];
-
-        if (" ".equals(pieceCode)) return false;
-
-        if (getPieceColor(pieceCode.charAt(0)) != currentPlayerTurn) {
-            return false;
-        }
-
-        if (!" ".equals(targetCode) && getPieceColor(pieceCode.charAt(0)) == getPieceColor(targetCode.charAt(0))) {
-            return false;
-        }
+    private void checkGameState() {
+        recordCurrentPosition();
 
-        int startRow = startPos / BOARD_SIZE;
-        int startCol = startPos % BOARD_SIZE;
-        int endRow = endPos / BOARD_SIZE;
-        int endCol = endPos % BOARD_SIZE;
-
-        char pieceType = Character.toLowerCase(pieceCode.charAt(0));
-
-        switch (pieceType) {
-            case 'p':
-                return isPawnMoveValid(startRow, startCol, endRow, endCol, endPos, getPieceColor(pieceCode.charAt(0)), targetCode);
-            case 'r':
-                return isRookMoveValid(startRow, startCol, endRow, endCol) && isPathClear(startPos, endPos);
-            case 'n':
-                return isKnightMoveValid(startRow, startCol, endRow, endCol);
-            case 'b':
-                return isBishopMoveValid(startRow, startCol, endRow, endCol) && isPathClear(startPos, endPos);
-            case 'q':
-                return (isRookMoveValid(startRow, startCol, endRow, endCol) ||
-                        isBishopMoveValid(startRow, startCol, endRow, endCol)) &&
-                        isPathClear(startPos, endPos);
-            case 'k':
-                return isCastlingMove(startRow, startCol, endRow, endCol, getPieceColor(pieceCode.charAt(0))) ||
-                        isKingMoveValid(startRow, startCol, endRow, endCol);
+        switch (GameState.of(position, repetitions, moveBuffer)) {
+            case DRAW_FIFTY_MOVES:
+                showGameEndOverlay("Draw by 50-move rule!");
+                break;
+            case DRAW_REPETITION:
+                showGameEndOverlay("Draw by threefold repetition!");
+                break;
+            case DRAW_INSUFFICIENT_MATERIAL:
+                showGameEndOverlay("Draw by insufficient material!");
+                break;
+            case CHECKMATE:
+                String winner = (currentPlayerTurn == 'W') ? "Black" : "White";
+                showGameEndOverlay(winner + " won");
+                break;
+            case STALEMATE:
+                showGameEndOverlay("Stalemate!");
+                break;
+            case CHECK:
+                Toast.makeText(this, "Check!", Toast.LENGTH_SHORT).show();
+                announceTablebaseVerdict();
+                break;
             default:
-                return false;
+                announceTablebaseVerdict();
+                break;
         }
     }
 
-    private char getPieceColor(char piece) {
-        if (Character.isUpperCase(piece)) return 'W';
-        if (Character.isLowerCase(piece)) return 'B';
-        return ' ';
-    }
-
-    private boolean isPawnMoveValid(int startRow, int startCol, int endRow, int endCol, int endPos, char color, String targetCode) {
-        int rowDiff = endRow - startRow;
-        int colDiff = endCol - startCol;
-
-        if (color == 'W') {
-            if (rowDiff == -1 && colDiff == 0 && " ".equals(targetCode)) return true;
-            if (startRow == 6 && rowDiff == -2 && colDiff == 0 && " ".equals(targetCode)) return true;
-            if (rowDiff == -1 && Math.abs(colDiff) == 1 && enPassantTarget == endPos+8 && " ".equals(targetCode)) return true;
-            return rowDiff == -1 && Math.abs(colDiff) == 1 && !" ".equals(targetCode);
-        } else {
-            if (rowDiff == 1 && colDiff == 0 && " ".equals(targetCode)) return true;
-            if (startRow == 1 && rowDiff == 2 && colDiff == 0 && " ".equals(targetCode) ) return true;
-            if (rowDiff == 1 && Math.abs(colDiff) == 1 && enPassantTarget == endPos-8 && " ".equals(targetCode)) return true;
-            return rowDiff == 1 && Math.abs(colDiff) == 1 && !" ".equals(targetCode);
-        }
-    }
-
-    private boolean isRookMoveValid(int startRow, int startCol, int endRow, int endCol) {
-        return startRow == endRow || startCol == endCol;
-    }
-
-    private boolean isKnightMoveValid(int startRow, int startCol, int endRow, int endCol) {
-        int rowDiff = Math.abs(startRow - endRow);
-        int colDiff = Math.abs(startCol - endCol);
-        return (rowDiff == 2 && colDiff == 1) || (rowDiff == 1 && colDiff == 2);
-    }
-
-    private boolean isBishopMoveValid(int startRow, int startCol, int endRow, int endCol) {
-        return Math.abs(startRow - endRow) == Math.abs(startCol - endCol);
-    }
-
-    private boolean isCastlingMove(int startRow, int startCol, int endRow, int endCol, char color) {
-        if (startRow != endRow) return false;
-        if (Math.abs(endCol - startCol) != 2) return false;
-
-        int kingStartRow = (color == 'W') ? 7 : 0;
-        int kingStartCol = 4;
-        if (startRow != kingStartRow || startCol != kingStartCol) return false;
-
-        int startPos = startRow * BOARD_SIZE + startCol;
-
-        if (color == 'W') {
-            if (whiteKingMoved) return false;
-            if (endCol == 6) { // kingside
-                if (whiteKingsideRookMoved) return false;
-                if (!"R".equals(currentBoardState[63])) return false;
-                if (!isPathClear(startPos, 63)) return false;
-                char enemy = 'B';
-                if (isSquareAttacked(currentBoardState, startPos, enemy)) return false;
-                if (isSquareAttacked(currentBoardState, startPos+1, enemy)) return false;
-                return !isSquareAttacked(currentBoardState, startPos + 2, enemy);
-            } else if (endCol == 2) { // queenside
-                if (whiteQueensideRookMoved) return false;
-                if (!"R".equals(currentBoardState[56])) return false;
-                if (!isPathClear(startPos, 56)) return false;
-                char enemy = 'B';
-                if (isSquareAttacked(currentBoardState, startPos, enemy)) return false;
-                if (isSquareAttacked(currentBoardState, startPos-1, enemy)) return false;
-                return !isSquareAttacked(currentBoardState, startPos - 2, enemy);
-            }
+    private void announceTablebaseVerdict() {
+        int verdict = Tablebase.probeWdl(position);
+        if (verdict == tablebaseVerdict) return;
+        tablebaseVerdict = verdict;
+        if (verdict == Tablebase.UNKNOWN) return;
+        String text;
+        if (verdict == Tablebase.DRAW) {
+            text = "Tablebase: draw with best play";
         } else {
-            if (blackKingMoved) return false;
-            if (endCol == 6) {
-                if (blackKingsideRookMoved) return false;
-                if (!"r".equals(currentBoardState[7])) return false;
-                if (!isPathClear(startPos, 7)) return false;
-                char enemy = 'W';
-                if (isSquareAttacked(currentBoardState, startPos, enemy)) return false;
-                if (isSquareAttacked(currentBoardState, startPos+1, enemy)) return false;
-                return !isSquareAttacked(currentBoardState, startPos + 2, enemy);
-            } else if (endCol == 2) {
-                if (blackQueensideRookMoved) return false;
-                if (!"r".equals(currentBoardState[0])) return false;
-                if (!isPathClear(startPos, 0)) return false;
-                char enemy = 'W';
-                if (isSquareAttacked(currentBoardState, startPos, enemy)) return false;
-                if (isSquareAttacked(currentBoardState, startPos-1, enemy)) return false;
-                return !isSquareAttacked(currentBoardState, startPos - 2, enemy);
-            }
-        }
-        return false;
-    }
-
-    private boolean isKingMoveValid(int startRow, int startCol, int endRow, int endCol) {
-        return Math.abs(startRow - endRow) <= 1 && Math.abs(startCol - endCol) <= 1;
-    }
-
-    private boolean isPathClear(int startPos, int endPos) {
-        int startRow = startPos / BOARD_SIZE, startCol = startPos % BOARD_SIZE;
-        int endRow = endPos / BOARD_SIZE, endCol = endPos % BOARD_SIZE;
-        int rowDiff = endRow - startRow;
-        int colDiff = endCol - startCol;
-        int rowStep = Integer.signum(rowDiff);
-        int colStep = Integer.signum(colDiff);
-        int currentPos = startPos + rowStep * BOARD_SIZE + colStep;
-
-        while (currentPos != endPos) {
-            if (!" ".equals(currentBoardState[currentPos])) {
-                return false;
-            }
-            currentPos += rowStep * BOARD_SIZE + colStep;
-        }
-        return true;
-    }
-
-    // Prüft, ob das Feld 'pos' von der Farbe 'byColor' angegriffen wird
-    private boolean isSquareAttacked(String[] board, int pos, char byColor) {
-        int row = pos / BOARD_SIZE;
-        int col = pos % BOARD_SIZE;
-
-        int pawnRow = row + (byColor == 'W' ? 1 : -1);
-        if (pawnRow >= 0 && pawnRow < BOARD_SIZE) {
-            String pawn = byColor == 'W' ? "P" : "p";
-            if (col - 1 >= 0 && pawn.equals(board[pawnRow * BOARD_SIZE + (col - 1)])) return true;
-            if (col + 1 < BOARD_SIZE && pawn.equals(board[pawnRow * BOARD_SIZE + (col + 1)])) return true;
-        }
-
-        int[][] knightMoves = { {1,2}, {2,1}, {-1,2}, {-2,1}, {1,-2}, {2,-1}, {-1,-2}, {-2,-1} };
-        for (int[] m : knightMoves) {
-            int r = row + m[0];
-            int c = col + m[1];
-            if (r>=0 && r<BOARD_SIZE && c>=0 && c<BOARD_SIZE) {
-                String p = board[r*BOARD_SIZE+c];
-                if ((byColor=='W' && "N".equals(p)) || (byColor=='B' && "n".equals(p))) return true;
-            }
-        }
-
-        int[][] directions = { {1,0}, {-1,0}, {0,1}, {0,-1}, {1,1}, {1,-1}, {-1,1}, {-1,-1} };
-        for (int i=0;i<directions.length;i++) {
-            int[] d = directions[i];
-            int r=row+d[0];
-            int c=col+d[1];
-            while (r>=0 && r<BOARD_SIZE && c>=0 && c<BOARD_SIZE) {
-                String p = board[r*BOARD_SIZE+c];
-                if (!" ".equals(p)) {
-                    char pc = p.charAt(0);
-                    if (byColor=='W' && Character.isUpperCase(pc) || byColor=='B' && Character.isLowerCase(pc)) {
-                        char t = Character.toLowerCase(pc);
-                        if ((i<4 && (t=='r' || t=='q')) || (i>=4 && (t=='b' || t=='q'))) return true;
-                        if (t=='k' && Math.max(Math.abs(r-row),Math.abs(c-col))==1) return true;
-                    }
-                    break;
-                }
-                r+=d[0];
-                c+=d[1];
-            }
-        }
-        return false;
-    }
-
-    private boolean isKingInCheck(char color, String[] board) {
-        char kingChar = (color=='W') ? 'K' : 'k';
-        int kingPos = -1;
-        for (int i=0;i<board.length;i++) {
-            if (kingChar==board[i].charAt(0)) { kingPos=i; break; }
-        }
-        if (kingPos==-1) return false;
-        char enemy = (color=='W') ? 'B' : 'W';
-        return isSquareAttacked(board, kingPos, enemy);
-    }
-
-    private String[] makeMoveCopy(int from, int to) {
-        String[] copy = currentBoardState.clone();
-        String piece = copy[from];
-        copy[from] = " ";
-        // en passant capture
-        if (piece.equalsIgnoreCase("p") && from%8!=to%8 && " ".equals(copy[to])) {
-            int cap = (piece.equals("P")) ? to+8 : to-8;
-            if (cap>=0 && cap<64) copy[cap]=" ";
-        }
-        copy[to] = piece;
-        if (piece.equalsIgnoreCase("k") && Math.abs(to-from)==2) {
-            boolean ks = to>from;
-            int rookFrom = ks ? from+3 : from-4;
-            int rookTo   = ks ? from+1 : from-1;
-            copy[rookTo] = copy[rookFrom];
-            copy[rookFrom] = " ";
-        }
-        return copy;
-    }
-
-    private boolean wouldLeaveKingInCheck(int from, int to) {
-        String[] copy = makeMoveCopy(from, to);
-        char color = getPieceColor(currentBoardState[from].charAt(0));
-        return isKingInCheck(color, copy);
-    }
-
-    private boolean hasAnyLegalMove(char player) {
-        char save = currentPlayerTurn;
-        currentPlayerTurn = player;
-        for (int i=0;i<64;i++) {
-            if (!" ".equals(currentBoardState[i]) && getPieceColor(currentBoardState[i].charAt(0))==player) {
-                for (int j=0;j<64;j++) {
-                    if (isMoveValid(i,j)) { currentPlayerTurn=save; return true; }
-                }
-            }
-        }
-        currentPlayerTurn = save;
-        return false;
-    }
-
-    private void checkGameState() {
-        recordCurrentPosition();
-
-        if (halfmoveClock >= 100) {
-            showGameEndOverlay("Draw by 50-move rule!");
-            return;
-        }
-
-        if (positionCount.getOrDefault(getPositionKey(), 0) >= 3) {
-            showGameEndOverlay("Draw by threefold repetition!");
-            return;
-        }
-
-        char player = currentPlayerTurn;
-        boolean inCheck = isKingInCheck(player, currentBoardState);
-        boolean hasMove = hasAnyLegalMove(player);
-        if (!hasMove) {
-            if (inCheck) {
-                String winner = (player == 'W') ? "Black" : "White";
-                showGameEndOverlay(winner + " won");
-            } else {
-                showGameEndOverlay("Stalemate!");
-            }
-        } else if (inCheck) {
-            Toast.makeText(this, "Check!", Toast.LENGTH_SHORT).show();
+            boolean whiteWins = (verdict == Tablebase.WIN) == position.whiteToMove();
+            text = "Tablebase: " + (whiteWins ? "White" : "Black") + " wins with best play";
         }
+        Toast.makeText(this, text, Toast.LENGTH_LONG).show();
     }
 
     private void setupDummyButtons() {
@@ -726,31 +295,6 @@ public abstract class ChessActivity extends AppCompatActivity {
         if (resignButton != null) resignButton.setOnClickListener(dummyListener);
     }
 
-    private int getCellColor(int index) {
-        int row = index / BOARD_SIZE;
-        int col = index % BOARD_SIZE;
-        return ((row + col) % 2 == 0) ? Color.parseColor("#FFF8DC")
-                : Color.parseColor("#8B4513");
-    }
-
-    private int getDrawableIdForPiece(String code) {
-        switch (code) {
-            case "p": return R.drawable.ic_pawn_black;
-            case "r": return R.drawable.ic_rook_black;
-            case "n": return R.drawable.ic_knight_black;
-            case "b": return R.drawable.ic_bishop_black;
-            case "q": return R.drawable.ic_queen_black;
-            case "k": return R.drawable.ic_king_black;
-            case "P": return R.drawable.ic_pawn_white;
-            case "R": return R.drawable.ic_rook_white;
-            case "N": return R.drawable.ic_knight_white;
-            case "B": return R.drawable.ic_bishop_white;
-            case "Q": return R.drawable.ic_queen_white;
-            case "K": return R.drawable.ic_king_white;
-            default: return 0;
-        }
-    }
-
     protected void showGameEndOverlay(String message) {
         if (gameEndOverlay == null) return;
         gameEndMessage.setText(message);
@@ -788,83 +332,57 @@ public abstract class ChessActivity extends AppCompatActivity {
     }
 
     // --- Helper methods for draw detection ---
-    private String getPositionKey() {
-        StringBuilder sb = new StringBuilder();
-        for (String s : currentBoardState) sb.append(s);
-        sb.append(currentPlayerTurn);
-        sb.append(whiteKingMoved).append(blackKingMoved);
-        sb.append(whiteKingsideRookMoved).append(whiteQueensideRookMoved);
-        sb.append(blackKingsideRookMoved).append(blackQueensideRookMoved);
-        sb.append(enPassantTarget);
-        return sb.toString();
+    private void recordCurrentPosition() {
+        repetitions.push(position.hash(), position.halfmoveClock());
     }
 
-    private void recordCurrentPosition() {
-        String key = getPositionKey();
-        int c = positionCount.getOrDefault(key, 0) + 1;
-        positionCount.put(key, c);
+    /** The last move played, encoded as {@link Move}, or {@link Move#NONE}. */
+    protected int getLastMove() {
+        return position.lastMove();
+    }
+
+    /**
+     * Takes back the last move using the position's undo stack, without
+     * checking the game state again. Returns false if there is nothing to undo.
+     */
+    protected boolean takeBackMove() {
+        if (position.undoDepth() == 0) return false;
+        position.unmakeMove();
+        repetitions.pop();
+        currentPlayerTurn = position.whiteToMove() ? 'W' : 'B';
+        boardView.setPosition(position);
+        return true;
     }
 
-    /** Returns a clone of the internal board array. */
+    /** Replays a previously taken back move, e.g. when stepping forward in analysis. */
+    protected void replayMove(int move) {
+        position.makeMove(move);
+        recordCurrentPosition();
+        currentPlayerTurn = position.whiteToMove() ? 'W' : 'B';
+        boardView.setPosition(position);
+    }
+
+    /** Returns the board as a fresh array of single-letter piece codes. */
     protected String[] getBoardStateCopy() {
-        return currentBoardState.clone();
+        return position.toStringBoard();
     }
 
     /**
      * Loads a position from a FEN string and updates the board and all
-     * relevant state. Only a subset of FEN fields is respected.
+     * relevant state. Malformed strings are ignored.
      */
     protected void loadFromFEN(String fen) {
-        String[] parts = fen.split(" ");
-        if (parts.length < 2) return;
-
-        // board
-        String[] rows = parts[0].split("/");
-        currentBoardState = new String[64];
-        int idx = 0;
-        for (String row : rows) {
-            for (int i = 0; i < row.length(); i++) {
-                char ch = row.charAt(i);
-                if (Character.isDigit(ch)) {
-                    int empty = ch - '0';
-                    for (int j = 0; j < empty; j++) currentBoardState[idx++] = " ";
-                } else {
-                    currentBoardState[idx++] = String.valueOf(ch);
-                }
-            }
-        }
-
-        // active color
-        currentPlayerTurn = parts[1].equals("w") ? 'W' : 'B';
-
-        // castling rights
-        String castling = parts.length > 2 ? parts[2] : "-";
-        whiteKingsideRookMoved = !castling.contains("K");
-        whiteQueensideRookMoved = !castling.contains("Q");
-        blackKingsideRookMoved = !castling.contains("k");
-        blackQueensideRookMoved = !castling.contains("q");
-        whiteKingMoved = whiteKingsideRookMoved && whiteQueensideRookMoved;
-        blackKingMoved = blackKingsideRookMoved && blackQueensideRookMoved;
-
-        // en passant
-        if (parts.length > 3 && !"-".equals(parts[3])) {
-            String ep = parts[3];
-            int file = ep.charAt(0) - 'a';
-            int rank = 8 - Character.getNumericValue(ep.charAt(1));
-            enPassantTarget = rank * BOARD_SIZE + file;
-        } else {
-            enPassantTarget = -1;
-        }
-
-        if (parts.length > 4) {
-            try { halfmoveClock = Integer.parseInt(parts[4]); } catch (NumberFormatException ignored) {}
-        }
-        if (parts.length > 5) {
-            try { fullmoveNumber = Integer.parseInt(parts[5]); } catch (NumberFormatException ignored) {}
+        try {
+            position.loadFromFEN(fen);
+        } catch (IllegalArgumentException e) {
+            return;
         }
+        currentPlayerTurn = position.whiteToMove() ? 'W' : 'B';
+        // the moves leading here are unknown, start a fresh repetition window
+        repetitions.clear();
+        recordCurrentPosition();
 
-        setupBoardCells();
-        placePiecesOnBoard();
+        boardView.setPosition(position);
     }
 
     protected boolean hasInternetConnection() {
@@ -881,4 +399,27 @@ public abstract class ChessActivity extends AppCompatActivity {
             return ni != null && ni.isConnected();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Engine for AI play and analysis: the on-device engine if it is enabled in
+     * the settings or there is no connection, otherwise stockfish.online.
+     */
+    protected ChessEngine createEngine() {
+        SharedPreferences prefs = getSharedPreferences("prefs", MODE_PRIVATE);
+        boolean offline = prefs.getBoolean(SettingsMenuActivity.PREF_OFFLINE_ENGINE, false);
+        if (!offline && !hasInternetConnection()) {
+            Toast.makeText(this, R.string.offline_engine_fallback, Toast.LENGTH_LONG).show();
+            offline = true;
+        }
+        ChessEngine engine;
+        if (offline) {
+            int cap = prefs.getInt(SettingsMenuActivity.PREF_ENGINE_THREADS,
+                    SettingsMenuActivity.MAX_ENGINE_THREADS);
+            engine = new LocalEngine(16, LocalEngine.defaultThreads(cap));
+        } else {
+            engine = new StockfishClient();
+        }
+        engine.start();
+        return engine;
+    }
+}
@@ -0,0 +1,70 @@
+package de.brockmann.chessinterface;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.View;
+
+/**
+ * Horizontal evaluation bar: the white part grows from the left with
+ * White's advantage. Scores are squashed with a logistic curve, so a pawn
+ * is clearly visible and a won position fills almost the whole bar.
+ */
+public class EvalBarView extends View {
+
+    private float whiteShare = 0.5f;
+    private final Paint whitePaint = new Paint();
+    private final Paint blackPaint = new Paint();
+    private final Paint centerPaint = new Paint();
+
+    public EvalBarView(Context context) {
+        super(context);
+        init();
+    }
+
+    public EvalBarView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init();
+    }
+
+    public EvalBarView(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+        init();
+    }
+
+    private void init() {
+        whitePaint.setColor(Color.rgb(240, 240, 240));
+        blackPaint.setColor(Color.rgb(50, 50, 50));
+        centerPaint.setColor(Color.GRAY);
+        centerPaint.setStrokeWidth(2f);
+    }
+
+    /**
+     * @param whiteScore centipawns from White's point of view
+     * @param whiteMate  moves to mate, positive if White mates, 0 if none
+     */
+    public void setEvaluation(int whiteScore, int whiteMate) {
+        float share;
+        if (whiteMate != 0) share = whiteMate > 0 ? 1f : 0f;
+        else share = (float) (1 / (1 + Math.exp(-whiteScore / 250.0)));
+        if (share == whiteShare) return;
+        whiteShare = share;
+        invalidate();
+    }
+
+    public void reset() {
+        setEvaluation(0, 0);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        float split = getWidth() * whiteShare;
+        canvas.drawRect(0, 0, split, getHeight(), whitePaint);
+        canvas.drawRect(split, 0, getWidth(), getHeight(), blackPaint);
+        float mid = getWidth() / 2f;
+        canvas.drawLine(mid, 0, mid, getHeight(), centerPaint);
+    }
+}
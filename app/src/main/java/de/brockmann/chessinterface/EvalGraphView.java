@@ -0,0 +1,133 @@
+package de.brockmann.chessinterface;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.util.AttributeSet;
+import android.view.View;
+
+import de.brockmann.chessinterface.engine.GameAnalysis;
+
+/**
+ * Evaluation graph of a whole game: one point per position, White's
+ * advantage upwards, clamped to {@link GameAnalysis#SCORE_CLAMP}. Positions
+ * without a result yet are skipped. Blunders get a red dot, the position on
+ * the board a vertical marker.
+ */
+public class EvalGraphView extends View {
+
+    private int[] scores = new int[0];
+    private boolean[] known = new boolean[0];
+    private boolean[] blunders = new boolean[0];
+    private int current = -1;
+
+    private final Paint linePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint axisPaint = new Paint();
+    private final Paint blunderPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint markerPaint = new Paint();
+    private final Path path = new Path();
+    private boolean pathDirty = true;
+
+    public EvalGraphView(Context context) {
+        super(context);
+        init();
+    }
+
+    public EvalGraphView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init();
+    }
+
+    public EvalGraphView(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+        init();
+    }
+
+    private void init() {
+        linePaint.setColor(Color.DKGRAY);
+        linePaint.setStrokeWidth(4f);
+        linePaint.setStyle(Paint.Style.STROKE);
+        axisPaint.setColor(Color.GRAY);
+        axisPaint.setStrokeWidth(1f);
+        blunderPaint.setColor(Color.RED);
+        markerPaint.setColor(Color.argb(120, 0, 120, 255));
+        markerPaint.setStrokeWidth(3f);
+    }
+
+    /** Forgets all scores and prepares for a game with {@code positions} positions. */
+    public void reset(int positions) {
+        scores = new int[positions];
+        known = new boolean[positions];
+        blunders = new boolean[positions];
+        pathDirty = true;
+        invalidate();
+    }
+
+    /** Score of position {@code index} from White's point of view. */
+    public void setScore(int index, int whiteScore) {
+        if (index < 0 || index >= scores.length) return;
+        scores[index] = whiteScore;
+        known[index] = true;
+        pathDirty = true;
+        invalidate();
+    }
+
+    /** Marks the move that led to position {@code index} as a blunder. */
+    public void setBlunder(int index, boolean blunder) {
+        if (index < 0 || index >= blunders.length || blunders[index] == blunder) return;
+        blunders[index] = blunder;
+        invalidate();
+    }
+
+    public void setCurrent(int index) {
+        if (current == index) return;
+        current = index;
+        invalidate();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        pathDirty = true;
+    }
+
+    private float x(int index) {
+        int n = Math.max(1, scores.length - 1);
+        return getPaddingLeft() + index * (getWidth() - getPaddingLeft() - getPaddingRight()) / (float) n;
+    }
+
+    private float y(int score) {
+        float mid = getHeight() / 2f;
+        return mid - score * (mid - 2) / GameAnalysis.SCORE_CLAMP;
+    }
+
+    private void rebuildPath() {
+        path.rewind();
+        boolean started = false;
+        for (int i = 0; i < scores.length; i++) {
+            if (!known[i]) continue;
+            if (started) path.lineTo(x(i), y(scores[i]));
+            else path.moveTo(x(i), y(scores[i]));
+            started = true;
+        }
+        pathDirty = false;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        float mid = getHeight() / 2f;
+        canvas.drawLine(0, mid, getWidth(), mid, axisPaint);
+        if (scores.length == 0) return;
+        if (pathDirty) rebuildPath();
+        canvas.drawPath(path, linePaint);
+        for (int i = 0; i < scores.length; i++) {
+            if (blunders[i] && known[i]) canvas.drawCircle(x(i), y(scores[i]), 6f, blunderPaint);
+        }
+        if (current >= 0 && current < scores.length) {
+            canvas.drawLine(x(current), 0, x(current), getHeight(), markerPaint);
+        }
+    }
+}
@@ -7,8 +7,6 @@ import android.content.Intent;
 import android.os.CountDownTimer;
 import android.view.View;
 import android.widget.TextView;
-import android.widget.ImageView;
-import android.widget.FrameLayout;
 import android.widget.Button;
 
 import java.util.Locale;
@@ -175,25 +173,11 @@ public class LocalChessActivity extends ChessActivity {
     private void applyBoardOrientation() {
         if (localPlayAction == null) return;
 
-        chessBoardGrid.postDelayed(() -> {
-            if ("flip_board".equals(localPlayAction)) {
-                float rotation = isBoardFlipped ? 180f : 0f;
-                chessBoardGrid.setRotation(rotation);
-                for (int i = 0; i < chessBoardGrid.getChildCount(); i++) {
-                    FrameLayout cell = (FrameLayout) chessBoardGrid.getChildAt(i);
-                    if (cell.getChildCount() > 0) {
-                        cell.getChildAt(0).setRotation(rotation);
-                    }
-                }
-            } else if ("flip_pieces".equals(localPlayAction)) {
-                for (int i = 0; i < chessBoardGrid.getChildCount(); i++) {
-                    FrameLayout cell = (FrameLayout) chessBoardGrid.getChildAt(i);
-                    if (cell.getChildCount() > 0) {
-                        ImageView piece = (ImageView) cell.getChildAt(0);
-                        piece.setScaleY(isBoardFlipped ? -1f : 1f);
-                    }
-                }
-            }
-        }, 200);
+        // the board view animates the turn itself, as one rotation of its canvas
+        if ("flip_board".equals(localPlayAction)) {
+            boardView.setFlipped(isBoardFlipped);
+        } else if ("flip_pieces".equals(localPlayAction)) {
+            boardView.setPiecesMirrored(isBoardFlipped);
+        }
     }
 }
@@ -0,0 +1,103 @@
+package de.brockmann.chessinterface;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.util.LruCache;
+
+import androidx.core.content.ContextCompat;
+
+import de.brockmann.chessinterface.core.Piece;
+
+/**
+ * All twelve piece sprites rendered side by side into one bitmap, in
+ * {@link Piece} order. Atlases are shared
+ * by every board in the process and kept per sprite size and day/night
+ * theme, so the vectors are only rasterised again when one of those
+ * changes, not for every view, relayout or rotation back to a known size.
+ * Used from the UI thread only.
+ */
+final class PieceAtlas {
+
+    private static final int PIECE_COUNT = 12;
+    // a few sizes: portrait and landscape boards of the different screens
+    private static final int CACHE_BYTES = 8 * 1024 * 1024;
+
+    private static final LruCache<Integer, PieceAtlas> CACHE = new LruCache<Integer, PieceAtlas>(CACHE_BYTES) {
+        @Override
+        protected int sizeOf(Integer key, PieceAtlas atlas) {
+            return atlas.bitmap.getByteCount();
+        }
+    };
+
+    private final Bitmap bitmap;
+    private final int size;
+    // reused for every draw
+    private final Rect src = new Rect();
+    private final RectF dst = new RectF();
+
+    private PieceAtlas(Bitmap bitmap, int size) {
+        this.bitmap = bitmap;
+        this.size = size;
+    }
+
+    /** Atlas with sprites of {@code size} pixels for the theme of {@code context}. */
+    static PieceAtlas get(Context context, int size) {
+        if (size <= 0) return null;
+        int night = context.getResources().getConfiguration().uiMode
+                & Configuration.UI_MODE_NIGHT_MASK;
+        Integer key = size << 8 | night;
+        PieceAtlas atlas = CACHE.get(key);
+        if (atlas == null) {
+            atlas = render(context, size);
+            CACHE.put(key, atlas);
+        }
+        return atlas;
+    }
+
+    private static PieceAtlas render(Context context, int size) {
+        Bitmap bitmap = Bitmap.createBitmap(size * PIECE_COUNT, size, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        for (int piece = 0; piece < PIECE_COUNT; piece++) {
+            Drawable d = ContextCompat.getDrawable(context, drawableFor(piece));
+            if (d == null) continue;
+            d.setBounds(piece * size, 0, (piece + 1) * size, size);
+            d.draw(canvas);
+        }
+        return new PieceAtlas(bitmap, size);
+    }
+
+    private static int drawableFor(int piece) {
+        switch (piece) {
+            case Piece.B_PAWN: return R.drawable.ic_pawn_black;
+            case Piece.B_ROOK: return R.drawable.ic_rook_black;
+            case Piece.B_KNIGHT: return R.drawable.ic_knight_black;
+            case Piece.B_BISHOP: return R.drawable.ic_bishop_black;
+            case Piece.B_QUEEN: return R.drawable.ic_queen_black;
+            case Piece.B_KING: return R.drawable.ic_king_black;
+            case Piece.W_PAWN: return R.drawable.ic_pawn_white;
+            case Piece.W_ROOK: return R.drawable.ic_rook_white;
+            case Piece.W_KNIGHT: return R.drawable.ic_knight_white;
+            case Piece.W_BISHOP: return R.drawable.ic_bishop_white;
+            case Piece.W_QUEEN: return R.drawable.ic_queen_white;
+            case Piece.W_KING: return R.drawable.ic_king_white;
+            default: return 0;
+        }
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    /** Draws {@code piece} with its top left corner at {@code left, top}. */
+    void draw(Canvas canvas, int piece, float left, float top, Paint paint) {
+        src.set(piece * size, 0, (piece + 1) * size, size);
+        dst.set(left, top, left + size, top + size);
+        canvas.drawBitmap(bitmap, src, dst, paint);
+    }
+}
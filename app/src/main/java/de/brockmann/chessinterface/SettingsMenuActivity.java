@@ -2,11 +2,19 @@ package de.brockmann.chessinterface;
 
 import android.content.SharedPreferences;
 import android.os.Bundle;
+import android.widget.SeekBar;
+import android.widget.TextView;
 import androidx.appcompat.app.AppCompatDelegate;
 import androidx.appcompat.widget.SwitchCompat;
 
 public class SettingsMenuActivity extends MenuActivity {
 
+    public static final String PREF_OFFLINE_ENGINE = "offline_engine";
+    public static final String PREF_ENGINE_THREADS = "engine_threads";
+    public static final int MAX_ENGINE_THREADS = 8;
+    public static final String PREF_AI_MOVE_TIME = "ai_move_time";
+    public static final int DEFAULT_AI_MOVE_TIME = 3;
+
     @Override
     protected int getContentLayoutId() {
         return R.layout.menu_settings_activity;
@@ -26,5 +34,40 @@ public class SettingsMenuActivity extends MenuActivity {
                     isChecked ? AppCompatDelegate.MODE_NIGHT_YES
                             : AppCompatDelegate.MODE_NIGHT_NO);
         });
+
+        SwitchCompat offlineSwitch = findViewById(R.id.switch_offline_engine);
+        offlineSwitch.setChecked(prefs.getBoolean(PREF_OFFLINE_ENGINE, false));
+        offlineSwitch.setOnCheckedChangeListener((buttonView, isChecked) ->
+                prefs.edit().putBoolean(PREF_OFFLINE_ENGINE, isChecked).apply());
+
+        SeekBar threadsBar = findViewById(R.id.seekBar_engine_threads);
+        TextView threadsLabel = findViewById(R.id.tv_engine_threads);
+        int threads = prefs.getInt(PREF_ENGINE_THREADS, MAX_ENGINE_THREADS);
+        threadsLabel.setText("Engine Threads: " + threads);
+        threadsBar.setProgress(threads - 1);
+        threadsBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar sb, int progress, boolean fromUser) {
+                threadsLabel.setText("Engine Threads: " + (progress + 1));
+                prefs.edit().putInt(PREF_ENGINE_THREADS, progress + 1).apply();
+            }
+            @Override public void onStartTrackingTouch(SeekBar sb) {}
+            @Override public void onStopTrackingTouch(SeekBar sb) {}
+        });
+
+        SeekBar moveTimeBar = findViewById(R.id.seekBar_ai_move_time);
+        TextView moveTimeLabel = findViewById(R.id.tv_ai_move_time);
+        int moveTime = prefs.getInt(PREF_AI_MOVE_TIME, DEFAULT_AI_MOVE_TIME);
+        moveTimeLabel.setText("AI Move Time: " + moveTime + " s");
+        moveTimeBar.setProgress(moveTime - 1);
+        moveTimeBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar sb, int progress, boolean fromUser) {
+                moveTimeLabel.setText("AI Move Time: " + (progress + 1) + " s");
+                prefs.edit().putInt(PREF_AI_MOVE_TIME, progress + 1).apply();
+            }
+            @Override public void onStartTrackingTouch(SeekBar sb) {}
+            @Override public void onStopTrackingTouch(SeekBar sb) {}
+        });
     }
 }
@@ -1,66 +1,299 @@
 package de.brockmann.chessinterface;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import org.json.JSONException;
 import org.json.JSONObject;
 
+import de.brockmann.chessinterface.engine.AnalysisListener;
+import de.brockmann.chessinterface.engine.AnalysisResult;
+import de.brockmann.chessinterface.engine.ChessEngine;
+import de.brockmann.chessinterface.engine.StrengthLimit;
+
 /**
- * Simple client for the stockfish.online API.
+ * Client for the stockfish.online API.
+ *
+ * <p>Requests run on a small fixed pool, which also bounds the number of open
+ * connections. Response bodies are always read to the end and closed, so
+ * {@link HttpURLConnection} can hand the socket back to its keep-alive pool
+ * for the next request; only failed or cancelled requests disconnect.
+ * Identical FEN+depth requests that are still running share one HTTP call.
  */
-public class StockfishClient {
+public class StockfishClient implements ChessEngine {
     private static final String API_ENDPOINT = "https://stockfish.online/api/s/v2.php";
+    public static final int DEFAULT_MAX_CONNECTIONS = 2;
+    public static final int DEFAULT_TIMEOUT_MS = 10_000;
+    // stockfish.online answers depths up to 15
+    private static final int MAX_DEPTH = 15;
+    private static final int[] STREAM_DEPTHS = {5, 9, 12, MAX_DEPTH};
+    // java.util.logging ends up in logcat as well and works in plain JVM tests
+    private static final Logger LOG = Logger.getLogger("StockfishClient");
+
+    private final String endpoint;
+    private final int maxConnections;
+    private final Map<String, Call> inFlight = new ConcurrentHashMap<>();
+    private ExecutorService pool;
+    private volatile int depthCap = MAX_DEPTH;
+
+    public StockfishClient() {
+        this(API_ENDPOINT, DEFAULT_MAX_CONNECTIONS);
+    }
 
-    public boolean start() {
-        // No initialization required for HTTP engine
+    /** Client for another endpoint, e.g. a local stand-in server in tests. */
+    public StockfishClient(String endpoint, int maxConnections) {
+        this.endpoint = endpoint;
+        this.maxConnections = maxConnections;
+    }
+
+    @Override
+    public synchronized boolean start() {
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(maxConnections, r -> {
+                Thread t = new Thread(r, "stockfish-http");
+                t.setDaemon(true);
+                return t;
+            });
+        }
         return true;
     }
 
+    @Override
     public void stop() {
-        // Nothing to stop
+        cancel();
+        inFlight.clear();
+        synchronized (this) {
+            if (pool != null) {
+                pool.shutdownNow();
+                pool = null;
+            }
+        }
+    }
+
+    @Override
+    public void cancel() {
+        for (Call call : inFlight.values()) call.abort();
     }
 
+    /**
+     * The API has no strength setting and returns a single line, so only
+     * the depth of the {@link StrengthLimit} applies.
+     */
+    @Override
     public void setElo(int elo) {
-        // This API does not support ELO based strength
+        StrengthLimit limit = StrengthLimit.forElo(elo);
+        depthCap = limit != null ? Math.min(limit.getDepth(), MAX_DEPTH) : MAX_DEPTH;
     }
 
+    @Override
     public String getBestMove(String fen, int depth) {
+        AnalysisResult result = analyse(fen, depth);
+        return result != null ? result.getBestMove() : null;
+    }
+
+    @Override
+    public AnalysisResult analyse(String fen, int depth) {
+        CompletableFuture<AnalysisResult> future =
+                analyseAsync(fen, Math.min(depth, depthCap), DEFAULT_TIMEOUT_MS);
         try {
-            String query = String.format("fen=%s&depth=%d",
-                    URLEncoder.encode(fen, StandardCharsets.UTF_8.name()),
-                    depth);
-            URL url = new URL(API_ENDPOINT + "?" + query);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-
-            int responseCode = connection.getResponseCode();
-            if (responseCode == HttpURLConnection.HTTP_OK) {
-                BufferedReader reader = new BufferedReader(
-                        new InputStreamReader(connection.getInputStream()));
-                StringBuilder sb = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    sb.append(line);
+            return future.get();
+        } catch (InterruptedException e) {
+            // nobody waits for the answer any more, let the HTTP call go
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+        } catch (CancellationException e) {
+            // cancel() aborted the call, nobody wants the answer
+        } catch (ExecutionException e) {
+            LOG.log(Level.WARNING, "analysis request failed", e.getCause());
+        }
+        return null;
+    }
+
+    /**
+     * The API has no streaming, so this asks for a few increasing depths up
+     * to the API's limit and reports each answer.
+     */
+    @Override
+    public void analyseInfinite(String fen, AnalysisListener listener) {
+        for (int depth : STREAM_DEPTHS) {
+            if (Thread.currentThread().isInterrupted()) return;
+            AnalysisResult info = analyse(fen, depth);
+            if (info == null) return;
+            listener.onInfo(info);
+            if (info.getMate() != 0) return;
+        }
+    }
+
+    public CompletableFuture<String> getBestMoveAsync(String fen, int depth) {
+        return analyseAsync(fen, Math.min(depth, depthCap), DEFAULT_TIMEOUT_MS)
+                .thenApply(r -> r != null ? r.getBestMove() : null);
+    }
+
+    /**
+     * Starts an analysis request. {@code timeoutMs} bounds connecting and
+     * reading separately. Cancelling the returned future aborts the HTTP
+     * call once nobody else is waiting for the same FEN and depth.
+     */
+    public CompletableFuture<AnalysisResult> analyseAsync(String fen, int depth, int timeoutMs) {
+        CompletableFuture<AnalysisResult> result = new CompletableFuture<>();
+        ExecutorService executor;
+        synchronized (this) {
+            executor = pool;
+        }
+        if (executor == null) {
+            result.completeExceptionally(new IllegalStateException("client not started"));
+            return result;
+        }
+
+        String key = depth + " " + fen;
+        Call call;
+        while (true) {
+            Call created = new Call(key);
+            call = inFlight.putIfAbsent(key, created);
+            if (call == null) {
+                call = created;
+                Call started = call;
+                call.task = executor.submit(() -> started.execute(fen, depth, timeoutMs));
+            }
+            if (call.join(result)) break;
+            // the call was aborted in the meantime
+            inFlight.remove(key, call);
+        }
+        return result;
+    }
+
+    /** One HTTP request, shared by all callers asking for the same key. */
+    private final class Call {
+        private final String key;
+        private final CompletableFuture<AnalysisResult> response = new CompletableFuture<>();
+        private volatile Future<?> task;
+        private volatile HttpURLConnection connection;
+        private int waiting;
+        private boolean closed;
+
+        Call(String key) {
+            this.key = key;
+        }
+
+        synchronized boolean join(CompletableFuture<AnalysisResult> caller) {
+            // a finished response can still be handed out, an aborted one cannot
+            if (closed && (!response.isDone() || response.isCancelled())) return false;
+            waiting++;
+            response.whenComplete((r, e) -> {
+                if (e != null) caller.completeExceptionally(e);
+                else caller.complete(r);
+            });
+            caller.whenComplete((r, e) -> {
+                if (caller.isCancelled()) leave();
+            });
+            return true;
+        }
+
+        private void leave() {
+            synchronized (this) {
+                if (--waiting > 0 || closed) return;
+                closed = true;
+            }
+            abort();
+        }
+
+        void abort() {
+            synchronized (this) {
+                closed = true;
+            }
+            inFlight.remove(key, this);
+            Future<?> t = task;
+            if (t != null) t.cancel(true);
+            HttpURLConnection c = connection;
+            if (c != null) c.disconnect();
+            response.cancel(false);
+        }
+
+        void execute(String fen, int depth, int timeoutMs) {
+            HttpURLConnection c = null;
+            try {
+                c = (HttpURLConnection) new URL(buildUrl(fen, depth)).openConnection();
+                connection = c;
+                c.setConnectTimeout(timeoutMs);
+                c.setReadTimeout(timeoutMs);
+                c.setRequestMethod("GET");
+                long startTime = System.currentTimeMillis();
+
+                int responseCode = c.getResponseCode();
+                if (responseCode != HttpURLConnection.HTTP_OK) {
+                    throw new IOException("HTTP " + responseCode);
                 }
-                reader.close();
-
-                JSONObject obj = new JSONObject(sb.toString());
-                String best = obj.optString("bestmove");
-                if (!best.isEmpty()) {
-                    String[] parts = best.split(" ");
-                    if (parts.length > 1) {
-                        return parts[1];
-                    }
+                String body;
+                try (InputStream in = c.getInputStream()) {
+                    body = readFully(in);
                 }
+                response.complete(parseResult(fen, depth, body, System.currentTimeMillis() - startTime));
+            } catch (Exception e) {
+                if (c != null) c.disconnect();
+                response.completeExceptionally(e);
+            } finally {
+                synchronized (this) {
+                    closed = true;
+                }
+                inFlight.remove(key, this);
             }
-            connection.disconnect();
-        } catch (Exception e) {
-            e.printStackTrace();
         }
-        return null;
+    }
+
+    private String buildUrl(String fen, int depth) throws IOException {
+        return new StringBuilder(endpoint.length() + fen.length() + 32)
+                .append(endpoint)
+                .append("?fen=").append(URLEncoder.encode(fen, StandardCharsets.UTF_8.name()))
+                .append("&depth=").append(depth)
+                .toString();
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    // the API reports evaluation in pawns and mate from White's point of view
+    static AnalysisResult parseResult(String fen, int depth, String json, long timeMs) throws JSONException {
+        JSONObject obj = new JSONObject(json);
+        String best = obj.optString("bestmove");
+        if (best.isEmpty()) return null;
+        String[] parts = best.split(" ");
+        if (parts.length < 2) return null;
+
+        int sign = fen.contains(" b ") ? -1 : 1;
+        int score = (int) Math.round(obj.optDouble("evaluation", 0) * 100) * sign;
+        int mate = obj.isNull("mate") ? 0 : obj.optInt("mate", 0) * sign;
+        List<String> pv = new ArrayList<>();
+        String continuation = obj.optString("continuation");
+        if (!continuation.isEmpty()) {
+            pv.addAll(Arrays.asList(continuation.trim().split("\\s+")));
+        } else {
+            pv.add(parts[1]);
+        }
+        return new AnalysisResult(parts[1], score, mate, depth, pv, 0, timeMs);
     }
 }
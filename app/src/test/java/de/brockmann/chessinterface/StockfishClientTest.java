@@ -0,0 +1,121 @@
+package de.brockmann.chessinterface;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.brockmann.chessinterface.engine.AnalysisResult;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs {@link StockfishClient} against a local stand-in for stockfish.online.
+ */
+public class StockfishClientTest {
+
+    private static final String FEN_BLACK = "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1";
+    private static final String RESPONSE = "{\"success\":true,\"evaluation\":0.45,\"mate\":null,"
+            + "\"bestmove\":\"bestmove e7e5 ponder g1f3\",\"continuation\":\"e7e5 g1f3 b8c6\"}";
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile CountDownLatch release = new CountDownLatch(0);
+    private StockfishClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api", exchange -> {
+            requests.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+            byte[] body = RESPONSE.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.setExecutor(java.util.concurrent.Executors.newCachedThreadPool());
+        server.start();
+        client = new StockfishClient("http://127.0.0.1:" + server.getAddress().getPort() + "/api", 2);
+        client.start();
+    }
+
+    @After
+    public void tearDown() {
+        client.stop();
+        server.stop(0);
+    }
+
+    @Test
+    public void parsesResultFromBlacksPointOfView() {
+        AnalysisResult result = client.analyse(FEN_BLACK, 12);
+        assertEquals("e7e5", result.getBestMove());
+        assertEquals(-45, result.getScore());
+        assertEquals(0, result.getMate());
+        assertEquals(3, result.getPv().size());
+    }
+
+    @Test
+    public void identicalRequestsShareOneCall() throws Exception {
+        release = new CountDownLatch(1);
+        CompletableFuture<String> a = client.getBestMoveAsync(FEN_BLACK, 10);
+        CompletableFuture<String> b = client.getBestMoveAsync(FEN_BLACK, 10);
+        release.countDown();
+        assertEquals("e7e5", a.get(5, TimeUnit.SECONDS));
+        assertEquals("e7e5", b.get(5, TimeUnit.SECONDS));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void cancellingOneCallerKeepsTheOther() throws Exception {
+        release = new CountDownLatch(1);
+        CompletableFuture<AnalysisResult> a = client.analyseAsync(FEN_BLACK, 10, 5000);
+        CompletableFuture<AnalysisResult> b = client.analyseAsync(FEN_BLACK, 10, 5000);
+        a.cancel(true);
+        release.countDown();
+        assertEquals("e7e5", b.get(5, TimeUnit.SECONDS).getBestMove());
+        assertTrue(a.isCancelled());
+    }
+
+    @Test
+    public void cancelDuringSlowRequestReturnsNull() throws Exception {
+        release = new CountDownLatch(1);
+        AnalysisResult[] result = {new AnalysisResult("a2a3", 0, 0, 1, java.util.Collections.emptyList(), 0, 0)};
+        Thread caller = new Thread(() -> result[0] = client.analyse(FEN_BLACK, 10));
+        caller.start();
+        while (requests.get() == 0) Thread.sleep(5);
+        client.cancel();
+        caller.join(5000);
+        release.countDown();
+        assertFalse(caller.isAlive());
+        assertNull(result[0]);
+    }
+
+    @Test
+    public void slowResponseTimesOut() throws Exception {
+        release = new CountDownLatch(1);
+        CompletableFuture<AnalysisResult> f = client.analyseAsync(FEN_BLACK, 10, 200);
+        try {
+            f.get(5, TimeUnit.SECONDS);
+            fail("expected a timeout");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof java.net.SocketTimeoutException);
+        } finally {
+            release.countDown();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    testImplementation(libs.junit)
+    jmh(libs.jmh.core)
+    jmhAnnotationProcessor(libs.jmh.generator.annprocess)
+}
+
+// ./gradlew :chess-core:jmh -- reports ops/s plus allocation per op from the GC profiler
+jmh {
+    profilers.add("gc")
+    resultFormat.set("JSON")
+}
+
+// ./gradlew :chess-core:perft --args="--divide startpos 5"
+// ./gradlew :chess-core:perft --args="--hash 256 --suite src/test/resources/perft/standard.epd --depth 6"
+tasks.register<JavaExec>("perft") {
+    group = "verification"
+    description = "Runs the perft driver on a position or an EPD suite."
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("de.brockmann.chessinterface.core.Perft")
+    workingDir = projectDir
+}
@@ -0,0 +1,27 @@
+package de.brockmann.chessinterface.core;
+
+/**
+ * Standard perft test positions shared by the benchmarks.
+ */
+final class BenchmarkPositions {
+
+    static final String KIWIPETE =
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+    static final String POSITION_3 = "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1";
+    static final String POSITION_4 =
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1";
+    static final String POSITION_5 = "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8";
+
+    private BenchmarkPositions() {}
+
+    static String fen(String name) {
+        switch (name) {
+            case "start": return Position.START_FEN;
+            case "kiwipete": return KIWIPETE;
+            case "position3": return POSITION_3;
+            case "position4": return POSITION_4;
+            case "position5": return POSITION_5;
+            default: throw new IllegalArgumentException("Unknown position: " + name);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package de.brockmann.chessinterface.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FEN serialisation and parsing, which the UI does on every engine
+ * request and every analysis step.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FenBenchmark {
+
+    @Param({"start", "kiwipete", "position3"})
+    String name;
+
+    private String fen;
+    private Position position;
+
+    @Setup
+    public void setup() {
+        fen = BenchmarkPositions.fen(name);
+        position = new Position(fen);
+    }
+
+    @Benchmark
+    public String getFEN() {
+        return position.getFEN();
+    }
+
+    @Benchmark
+    public long loadFromFEN() {
+        position.loadFromFEN(fen);
+        return position.hash();
+    }
+
+    @Benchmark
+    public String roundTrip() {
+        position.loadFromFEN(fen);
+        return position.getFEN();
+    }
+}
@@ -0,0 +1,53 @@
+package de.brockmann.chessinterface.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Legal move counting as done once per ply by the game-state check.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoveGeneratorBenchmark {
+
+    @Param({"start", "kiwipete", "position3", "position4", "position5"})
+    String name;
+
+    private Position position;
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+    @Setup
+    public void setup() {
+        position = new Position(BenchmarkPositions.fen(name));
+    }
+
+    @Benchmark
+    public int legalMoves() {
+        return MoveGenerator.generateLegalMoves(position, moves);
+    }
+
+    @Benchmark
+    public int captures() {
+        return MoveGenerator.generateCaptures(position, moves);
+    }
+
+    @Benchmark
+    public boolean inCheck() {
+        return position.isInCheck();
+    }
+}
@@ -0,0 +1,70 @@
+package de.brockmann.chessinterface.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Perft node counting. The start position runs up to depth 6, the denser
+ * test positions up to depth 4 to keep a full run in the minutes range.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PerftBenchmark {
+
+    @State(Scope.Thread)
+    public static class StartPosition {
+        @Param({"1", "2", "3", "4", "5", "6"})
+        int depth;
+
+        Position position;
+        int[][] buffers;
+
+        @Setup
+        public void setup() {
+            position = new Position();
+            buffers = new int[depth + 1][MoveGenerator.MAX_MOVES];
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TestPosition {
+        @Param({"kiwipete", "position3", "position4", "position5"})
+        String name;
+
+        @Param({"1", "2", "3", "4"})
+        int depth;
+
+        Position position;
+        int[][] buffers;
+
+        @Setup
+        public void setup() {
+            position = new Position(BenchmarkPositions.fen(name));
+            buffers = new int[depth + 1][MoveGenerator.MAX_MOVES];
+        }
+    }
+
+    @Benchmark
+    public long startPosition(StartPosition state) {
+        return Perft.perft(state.position, state.depth, state.buffers, null);
+    }
+
+    @Benchmark
+    public long testPosition(TestPosition state) {
+        return Perft.perft(state.position, state.depth, state.buffers, null);
+    }
+}
@@ -0,0 +1,64 @@
+package de.brockmann.chessinterface.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the repetition key: incremental update during make/unmake,
+ * full recomputation, and recording plus lookup in a 100 ply window.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RepetitionBenchmark {
+
+    private static final int WINDOW = 100;
+
+    private Position position;
+    private int move;
+    private final RepetitionHistory history = new RepetitionHistory();
+
+    @Setup
+    public void setup() {
+        position = new Position(BenchmarkPositions.KIWIPETE);
+        move = Move.encode(Square.fromAlgebraic("e5"), Square.fromAlgebraic("f7"));
+        history.clear();
+        // synthetic keys with a running halfmove clock keep the whole window searchable
+        for (int i = 0; i < WINDOW; i++) history.push(position.hash() + i, i + 1);
+    }
+
+    @Benchmark
+    public long makeUnmake() {
+        position.makeMove(move);
+        long key = position.hash();
+        position.unmakeMove();
+        return key;
+    }
+
+    @Benchmark
+    public long computeHash() {
+        return position.computeHash();
+    }
+
+    @Benchmark
+    public int recordAndCount() {
+        long key = position.hash();
+        history.push(key, WINDOW + 1);
+        int count = history.count(key);
+        history.pop();
+        return count;
+    }
+}
@@ -0,0 +1,97 @@
+package de.brockmann.chessinterface.core;
+
+/**
+ * Precomputed attack tables and sliding-piece attack generation.
+ * Bit {@code i} of a bitboard corresponds to {@link Square} index {@code i}.
+ */
+public final class Bitboards {
+
+    public static final long[] KNIGHT_ATTACKS = new long[64];
+    public static final long[] KING_ATTACKS = new long[64];
+    /** Squares attacked by a pawn of the given colour standing on the square. */
+    public static final long[][] PAWN_ATTACKS = new long[2][64];
+
+    // ray directions as {rowStep, colStep}; the first four are orthogonal
+    private static final int[][] DIRECTIONS = {
+            {-1, 0}, {1, 0}, {0, 1}, {0, -1},
+            {-1, 1}, {-1, -1}, {1, 1}, {1, -1}
+    };
+    // whether stepping along a direction increases the square index
+    private static final boolean[] POSITIVE = {false, true, true, false, false, false, true, true};
+    private static final long[][] RAYS = new long[8][64];
+    private static final int[] OPPOSITE = {1, 0, 3, 2, 7, 6, 5, 4};
+
+    /** Squares strictly between two squares on a common line, 0 otherwise. */
+    public static final long[][] BETWEEN = new long[64][64];
+    /** Full board line through two squares (including both), 0 if not aligned. */
+    public static final long[][] LINE = new long[64][64];
+
+    static {
+        int[][] knight = {{1, 2}, {2, 1}, {-1, 2}, {-2, 1}, {1, -2}, {2, -1}, {-1, -2}, {-2, -1}};
+        for (int sq = 0; sq < 64; sq++) {
+            int row = Square.row(sq);
+            int col = Square.col(sq);
+            for (int[] m : knight) {
+                KNIGHT_ATTACKS[sq] |= bit(row + m[0], col + m[1]);
+            }
+            for (int[] d : DIRECTIONS) {
+                KING_ATTACKS[sq] |= bit(row + d[0], col + d[1]);
+            }
+            PAWN_ATTACKS[Piece.WHITE][sq] = bit(row - 1, col - 1) | bit(row - 1, col + 1);
+            PAWN_ATTACKS[Piece.BLACK][sq] = bit(row + 1, col - 1) | bit(row + 1, col + 1);
+            for (int dir = 0; dir < 8; dir++) {
+                int r = row + DIRECTIONS[dir][0];
+                int c = col + DIRECTIONS[dir][1];
+                while (r >= 0 && r < 8 && c >= 0 && c < 8) {
+                    RAYS[dir][sq] |= 1L << Square.of(r, c);
+                    r += DIRECTIONS[dir][0];
+                    c += DIRECTIONS[dir][1];
+                }
+            }
+        }
+        for (int sq = 0; sq < 64; sq++) {
+            for (int dir = 0; dir < 8; dir++) {
+                long line = RAYS[dir][sq] | RAYS[OPPOSITE[dir]][sq] | (1L << sq);
+                long ray = RAYS[dir][sq];
+                while (ray != 0) {
+                    int other = Long.numberOfTrailingZeros(ray);
+                    ray &= ray - 1;
+                    BETWEEN[sq][other] = RAYS[dir][sq] & RAYS[OPPOSITE[dir]][other];
+                    LINE[sq][other] = line;
+                }
+            }
+        }
+    }
+
+    private Bitboards() {}
+
+    private static long bit(int row, int col) {
+        if (row < 0 || row > 7 || col < 0 || col > 7) return 0L;
+        return 1L << Square.of(row, col);
+    }
+
+    private static long rayAttacks(int dir, int sq, long occupied) {
+        long ray = RAYS[dir][sq];
+        long blockers = ray & occupied;
+        if (blockers != 0) {
+            int first = POSITIVE[dir] ? Long.numberOfTrailingZeros(blockers)
+                    : 63 - Long.numberOfLeadingZeros(blockers);
+            ray ^= RAYS[dir][first];
+        }
+        return ray;
+    }
+
+    public static long rookAttacks(int sq, long occupied) {
+        return rayAttacks(0, sq, occupied) | rayAttacks(1, sq, occupied)
+                | rayAttacks(2, sq, occupied) | rayAttacks(3, sq, occupied);
+    }
+
+    public static long bishopAttacks(int sq, long occupied) {
+        return rayAttacks(4, sq, occupied) | rayAttacks(5, sq, occupied)
+                | rayAttacks(6, sq, occupied) | rayAttacks(7, sq, occupied);
+    }
+
+    public static long queenAttacks(int sq, long occupied) {
+        return rookAttacks(sq, occupied) | bishopAttacks(sq, occupied);
+    }
+}
@@ -0,0 +1,43 @@
+package de.brockmann.chessinterface.core;
+
+/**
+ * Outcome of a position from the point of view of the side to move.
+ */
+public enum GameState {
+    ONGOING,
+    CHECK,
+    CHECKMATE,
+    STALEMATE,
+    DRAW_FIFTY_MOVES,
+    DRAW_REPETITION,
+    DRAW_INSUFFICIENT_MATERIAL;
+
+    public boolean isOver() {
+        return this != ONGOING && this != CHECK;
+    }
+
+    /**
+     * Classifies {@code pos}. The position must already be recorded in
+     * {@code history}; {@code buffer} needs {@link MoveGenerator#MAX_MOVES} entries.
+     */
+    public static GameState of(Position pos, RepetitionHistory history, int[] buffer) {
+        if (pos.halfmoveClock() >= 100) return DRAW_FIFTY_MOVES;
+        if (history != null && history.count(pos.hash()) >= 3) return DRAW_REPETITION;
+        if (isInsufficientMaterial(pos)) return DRAW_INSUFFICIENT_MATERIAL;
+        boolean inCheck = pos.isInCheck();
+        if (MoveGenerator.generateLegalMoves(pos, buffer) == 0) {
+            return inCheck ? CHECKMATE : STALEMATE;
+        }
+        return inCheck ? CHECK : ONGOING;
+    }
+
+    /** King against king, alone or with a single knight or bishop: nobody can mate. */
+    public static boolean isInsufficientMaterial(Position pos) {
+        int pieces = Long.bitCount(pos.occupied());
+        if (pieces == 2) return true;
+        if (pieces != 3) return false;
+        long minors = pos.pieces(Piece.W_KNIGHT) | pos.pieces(Piece.W_BISHOP)
+                | pos.pieces(Piece.B_KNIGHT) | pos.pieces(Piece.B_BISHOP);
+        return minors != 0;
+    }
+}
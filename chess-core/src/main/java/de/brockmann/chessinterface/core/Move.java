@@ -0,0 +1,50 @@
+package de.brockmann.chessinterface.core;
+
+/**
+ * Moves are packed into an {@code int}: bits 0-5 hold the origin square,
+ * bits 6-11 the target square, bits 12-14 the promotion piece type
+ * (0 if none) and bits 15-16 a special-move flag.
+ */
+public final class Move {
+
+    public static final int NONE = 0;
+
+    public static final int FLAG_NORMAL = 0;
+    public static final int FLAG_EN_PASSANT = 1;
+    public static final int FLAG_CASTLING = 2;
+    public static final int FLAG_DOUBLE_PUSH = 3;
+
+    private Move() {}
+
+    public static int encode(int from, int to) {
+        return from | (to << 6);
+    }
+
+    public static int encode(int from, int to, int promotionType, int flag) {
+        return from | (to << 6) | (promotionType << 12) | (flag << 15);
+    }
+
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    /** Promotion piece type, or 0 if the move is not a promotion. */
+    public static int promotion(int move) {
+        return (move >>> 12) & 7;
+    }
+
+    public static int flag(int move) {
+        return (move >>> 15) & 3;
+    }
+
+    /** Long algebraic notation as used by UCI engines, e.g. "e2e4" or "e7e8q". */
+    public static String toUci(int move) {
+        String s = Square.toAlgebraic(from(move)) + Square.toAlgebraic(to(move));
+        int promo = promotion(move);
+        return promo == 0 ? s : s + Character.toLowerCase(Piece.toChar(promo));
+    }
+}
@@ -0,0 +1,214 @@
+package de.brockmann.chessinterface.core;
+
+import static de.brockmann.chessinterface.core.Bitboards.BETWEEN;
+import static de.brockmann.chessinterface.core.Bitboards.LINE;
+
+/**
+ * Legal move generator. Moves are written into a caller supplied buffer
+ * of at least {@link #MAX_MOVES} entries and the number of moves is
+ * returned. Legality is established up front with check and pin masks,
+ * so no move has to be played to be verified (en passant excepted).
+ *
+ * <p>Generation is staged: {@link #generateCaptures} yields captures and
+ * promotions, {@link #generateQuiets} everything else.</p>
+ */
+public final class MoveGenerator {
+
+    /** Upper bound for the number of legal moves in any position. */
+    public static final int MAX_MOVES = 256;
+
+    private MoveGenerator() {}
+
+    public static int generateLegalMoves(Position pos, int[] out) {
+        return generate(pos, out, true, true);
+    }
+
+    /** Captures, en passant and all promotions. */
+    public static int generateCaptures(Position pos, int[] out) {
+        return generate(pos, out, true, false);
+    }
+
+    /** Non-capturing, non-promoting moves including castling. */
+    public static int generateQuiets(Position pos, int[] out) {
+        return generate(pos, out, false, true);
+    }
+
+    private static int generate(Position pos, int[] out, boolean noisy, boolean quiet) {
+        int us = pos.sideToMove();
+        int them = us ^ 1;
+        long own = pos.occupancy(us);
+        long enemy = pos.occupancy(them);
+        long occ = own | enemy;
+        int king = pos.kingSquare(us);
+        int n = 0;
+
+        long targets = (noisy ? enemy : 0) | (quiet ? ~occ : 0);
+
+        // king moves, checked against attacks with the king lifted off the board
+        long occWithoutKing = occ ^ (1L << king);
+        long kingTargets = Bitboards.KING_ATTACKS[king] & targets;
+        while (kingTargets != 0) {
+            int to = Long.numberOfTrailingZeros(kingTargets);
+            kingTargets &= kingTargets - 1;
+            if (pos.attackersTo(to, them, occWithoutKing) == 0) out[n++] = Move.encode(king, to);
+        }
+
+        long checkers = pos.attackersTo(king, them, occ);
+        if (Long.bitCount(checkers) > 1) return n;
+        long checkMask = checkers == 0 ? ~0L
+                : checkers | BETWEEN[king][Long.numberOfTrailingZeros(checkers)];
+        long pinned = pinnedPieces(pos, us, king, occ);
+
+        if (quiet && checkers == 0) n = generateCastling(pos, out, n, us, them, king, occ);
+
+        // knights: a pinned knight can never move
+        long knights = pos.pieces(Piece.make(us, Piece.KNIGHT)) & ~pinned;
+        while (knights != 0) {
+            int from = Long.numberOfTrailingZeros(knights);
+            knights &= knights - 1;
+            n = addMoves(out, n, from, Bitboards.KNIGHT_ATTACKS[from] & targets & checkMask);
+        }
+
+        long diagonal = pos.pieces(Piece.make(us, Piece.BISHOP)) | pos.pieces(Piece.make(us, Piece.QUEEN));
+        while (diagonal != 0) {
+            int from = Long.numberOfTrailingZeros(diagonal);
+            diagonal &= diagonal - 1;
+            long moves = Bitboards.bishopAttacks(from, occ) & targets & checkMask;
+            if ((pinned & (1L << from)) != 0) moves &= LINE[king][from];
+            n = addMoves(out, n, from, moves);
+        }
+
+        long straight = pos.pieces(Piece.make(us, Piece.ROOK)) | pos.pieces(Piece.make(us, Piece.QUEEN));
+        while (straight != 0) {
+            int from = Long.numberOfTrailingZeros(straight);
+            straight &= straight - 1;
+            long moves = Bitboards.rookAttacks(from, occ) & targets & checkMask;
+            if ((pinned & (1L << from)) != 0) moves &= LINE[king][from];
+            n = addMoves(out, n, from, moves);
+        }
+
+        return generatePawnMoves(pos, out, n, noisy, quiet, us, king, occ, enemy, checkMask, pinned);
+    }
+
+    private static int generatePawnMoves(Position pos, int[] out, int n, boolean noisy, boolean quiet,
+                                         int us, int king, long occ, long enemy,
+                                         long checkMask, long pinned) {
+        int forward = us == Piece.WHITE ? -8 : 8;
+        int startRow = us == Piece.WHITE ? 6 : 1;
+        int promoRow = us == Piece.WHITE ? 0 : 7;
+        int ep = pos.epSquare();
+
+        long pawns = pos.pieces(Piece.make(us, Piece.PAWN));
+        while (pawns != 0) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+            long allowed = checkMask;
+            if ((pinned & (1L << from)) != 0) allowed &= LINE[king][from];
+
+            int one = from + forward;
+            if ((occ & (1L << one)) == 0) {
+                if (Square.row(one) == promoRow) {
+                    if (noisy && (allowed & (1L << one)) != 0) n = addPromotions(out, n, from, one);
+                } else if (quiet) {
+                    if ((allowed & (1L << one)) != 0) out[n++] = Move.encode(from, one);
+                    int two = one + forward;
+                    if (Square.row(from) == startRow && (occ & (1L << two)) == 0
+                            && (allowed & (1L << two)) != 0) {
+                        out[n++] = Move.encode(from, two, 0, Move.FLAG_DOUBLE_PUSH);
+                    }
+                }
+            }
+
+            if (!noisy) continue;
+            long attacks = Bitboards.PAWN_ATTACKS[us][from];
+            long captures = attacks & enemy & allowed;
+            while (captures != 0) {
+                int to = Long.numberOfTrailingZeros(captures);
+                captures &= captures - 1;
+                if (Square.row(to) == promoRow) {
+                    n = addPromotions(out, n, from, to);
+                } else {
+                    out[n++] = Move.encode(from, to);
+                }
+            }
+            if (ep != Square.NONE && (attacks & (1L << ep)) != 0
+                    && isEnPassantLegal(pos, us, king, from, ep, occ)) {
+                out[n++] = Move.encode(from, ep, 0, Move.FLAG_EN_PASSANT);
+            }
+        }
+        return n;
+    }
+
+    private static boolean isEnPassantLegal(Position pos, int us, int king, int from, int ep, long occ) {
+        int captured = ep + (us == Piece.WHITE ? 8 : -8);
+        // play the capture on the occupancy and look for any attack on the king;
+        // this also covers the rare horizontal pin through both pawns
+        long after = (occ ^ (1L << from) ^ (1L << captured)) | (1L << ep);
+        long attackers = pos.attackersTo(king, us ^ 1, after) & ~(1L << captured);
+        return attackers == 0;
+    }
+
+    private static int generateCastling(Position pos, int[] out, int n, int us, int them, int king, long occ) {
+        int rights = pos.castlingRights();
+        if (rights == 0 || king != Square.of(us == Piece.WHITE ? 7 : 0, 4)) return n;
+        int kingside = us == Piece.WHITE ? Position.CASTLE_WHITE_KINGSIDE : Position.CASTLE_BLACK_KINGSIDE;
+        int queenside = us == Piece.WHITE ? Position.CASTLE_WHITE_QUEENSIDE : Position.CASTLE_BLACK_QUEENSIDE;
+        int rook = Piece.make(us, Piece.ROOK);
+
+        if ((rights & kingside) != 0 && pos.pieceAt(king + 3) == rook
+                && (occ & ((1L << (king + 1)) | (1L << (king + 2)))) == 0
+                && !pos.isSquareAttacked(king + 1, them) && !pos.isSquareAttacked(king + 2, them)) {
+            out[n++] = Move.encode(king, king + 2, 0, Move.FLAG_CASTLING);
+        }
+        if ((rights & queenside) != 0 && pos.pieceAt(king - 4) == rook
+                && (occ & ((1L << (king - 1)) | (1L << (king - 2)) | (1L << (king - 3)))) == 0
+                && !pos.isSquareAttacked(king - 1, them) && !pos.isSquareAttacked(king - 2, them)) {
+            out[n++] = Move.encode(king, king - 2, 0, Move.FLAG_CASTLING);
+        }
+        return n;
+    }
+
+    private static long pinnedPieces(Position pos, int us, int king, long occ) {
+        int off = (us ^ 1) * 6;
+        long queens = pos.pieces(off + Piece.QUEEN);
+        long enemy = pos.occupancy(us ^ 1);
+        // enemy sliders that would hit the king if our own pieces were transparent
+        long snipers = (Bitboards.rookAttacks(king, enemy) & (pos.pieces(off + Piece.ROOK) | queens))
+                | (Bitboards.bishopAttacks(king, enemy) & (pos.pieces(off + Piece.BISHOP) | queens));
+        long own = pos.occupancy(us);
+        long pinned = 0;
+        while (snipers != 0) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+            long blockers = BETWEEN[king][sniper] & occ;
+            if (Long.bitCount(blockers) == 1 && (blockers & own) != 0) pinned |= blockers;
+        }
+        return pinned;
+    }
+
+    private static int addMoves(int[] out, int n, int from, long targets) {
+        while (targets != 0) {
+            out[n++] = Move.encode(from, Long.numberOfTrailingZeros(targets));
+            targets &= targets - 1;
+        }
+        return n;
+    }
+
+    private static int addPromotions(int[] out, int n, int from, int to) {
+        out[n++] = Move.encode(from, to, Piece.QUEEN, Move.FLAG_NORMAL);
+        out[n++] = Move.encode(from, to, Piece.KNIGHT, Move.FLAG_NORMAL);
+        out[n++] = Move.encode(from, to, Piece.ROOK, Move.FLAG_NORMAL);
+        out[n++] = Move.encode(from, to, Piece.BISHOP, Move.FLAG_NORMAL);
+        return n;
+    }
+
+    /** Bitboard of all legal target squares of the piece on {@code from}. */
+    public static long legalTargets(Position pos, int from, int[] buffer) {
+        int count = generateLegalMoves(pos, buffer);
+        long mask = 0;
+        for (int i = 0; i < count; i++) {
+            if (Move.from(buffer[i]) == from) mask |= 1L << Move.to(buffer[i]);
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,189 @@
+package de.brockmann.chessinterface.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Perft driver: counts the leaf nodes of the legal move tree to verify
+ * move generation against published numbers. Root moves are split across
+ * a {@link ForkJoinPool}; an optional {@link PerftCache} is shared by all
+ * workers.
+ *
+ * <pre>
+ * Perft [--threads N] [--hash MB] [--divide] &lt;fen|startpos&gt; &lt;depth&gt;
+ * Perft [--threads N] [--hash MB] --suite &lt;file.epd&gt; [--depth N]
+ * </pre>
+ */
+public final class Perft {
+
+    private Perft() {}
+
+    /** Counts nodes at {@code depth} using all available cores and no cache. */
+    public static long perft(String fen, int depth) {
+        long total = 0;
+        for (long n : divide(fen, depth, ForkJoinPool.commonPool(), null).values()) total += n;
+        return total;
+    }
+
+    /**
+     * Node counts per root move in UCI notation, in generation order.
+     * {@code cache} may be null.
+     */
+    public static Map<String, Long> divide(String fen, int depth, ForkJoinPool pool, PerftCache cache) {
+        if (depth < 1) throw new IllegalArgumentException("depth must be at least 1");
+        Position root = new Position(fen);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegalMoves(root, moves);
+
+        List<RootTask> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) tasks.add(new RootTask(fen, moves[i], depth - 1, cache));
+        pool.invoke(new RecursiveTask<Void>() {
+            @Override
+            protected Void compute() {
+                invokeAll(tasks);
+                return null;
+            }
+        });
+
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (RootTask task : tasks) result.put(Move.toUci(task.move), task.join());
+        return result;
+    }
+
+    /**
+     * Sequential perft on {@code pos}, which is restored afterwards.
+     * {@code buffers} needs {@code depth + 1} rows of {@link MoveGenerator#MAX_MOVES}.
+     */
+    public static long perft(Position pos, int depth, int[][] buffers, PerftCache cache) {
+        if (depth == 0) return 1;
+        if (cache != null && depth > 1) {
+            long cached = cache.get(pos.hash(), depth);
+            if (cached >= 0) return cached;
+        }
+        int[] moves = buffers[depth];
+        int count = MoveGenerator.generateLegalMoves(pos, moves);
+        if (depth == 1) return count;
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            pos.makeMove(moves[i]);
+            nodes += perft(pos, depth - 1, buffers, cache);
+            pos.unmakeMove();
+        }
+        if (cache != null) cache.put(pos.hash(), depth, nodes);
+        return nodes;
+    }
+
+    private static final class RootTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final String fen;
+        private final int move;
+        private final int depth;
+        private final PerftCache cache;
+
+        RootTask(String fen, int move, int depth, PerftCache cache) {
+            this.fen = fen;
+            this.move = move;
+            this.depth = depth;
+            this.cache = cache;
+        }
+
+        @Override
+        protected Long compute() {
+            Position pos = new Position(fen);
+            pos.makeMove(move);
+            return perft(pos, depth, new int[depth + 1][MoveGenerator.MAX_MOVES], cache);
+        }
+    }
+
+    // --- command line ---
+
+    public static void main(String[] args) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int hashMb = 0;
+        int maxDepth = Integer.MAX_VALUE;
+        boolean divide = false;
+        String suite = null;
+        List<String> rest = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--hash": hashMb = Integer.parseInt(args[++i]); break;
+                case "--depth": maxDepth = Integer.parseInt(args[++i]); break;
+                case "--divide": divide = true; break;
+                case "--suite": suite = args[++i]; break;
+                default: rest.add(args[i]);
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        PerftCache cache = hashMb > 0 ? new PerftCache(hashMb) : null;
+        try {
+            if (suite != null) {
+                boolean ok = runSuite(suite, maxDepth, pool, cache);
+                if (!ok) System.exit(1);
+            } else if (rest.size() >= 2) {
+                String fen = "startpos".equals(rest.get(0)) ? Position.START_FEN
+                        : String.join(" ", rest.subList(0, rest.size() - 1));
+                int depth = Integer.parseInt(rest.get(rest.size() - 1));
+                long start = System.nanoTime();
+                Map<String, Long> counts = divide(fen, depth, pool, cache);
+                long total = 0;
+                for (Map.Entry<String, Long> e : counts.entrySet()) {
+                    if (divide) System.out.println(e.getKey() + ": " + e.getValue());
+                    total += e.getValue();
+                }
+                long ms = (System.nanoTime() - start) / 1_000_000;
+                System.out.println();
+                System.out.println("Nodes searched: " + total);
+                System.out.println("Time (ms): " + ms + ", nps: " + total * 1000 / Math.max(1, ms));
+            } else {
+                System.err.println("usage: Perft [--threads N] [--hash MB] [--divide] <fen|startpos> <depth>");
+                System.err.println("       Perft [--threads N] [--hash MB] --suite <file.epd> [--depth N]");
+                System.exit(2);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Runs an EPD suite where each line reads {@code <fen> ;D1 20 ;D2 400 ...}.
+     * Returns whether every count up to {@code maxDepth} matched.
+     */
+    public static boolean runSuite(String file, int maxDepth, ForkJoinPool pool, PerftCache cache)
+            throws IOException {
+        boolean allPassed = true;
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] fields = line.split(";");
+                String fen = fields[0].trim();
+                for (int i = 1; i < fields.length; i++) {
+                    String[] entry = fields[i].trim().split("\\s+");
+                    int depth = Integer.parseInt(entry[0].substring(1));
+                    if (depth > maxDepth) continue;
+                    long expected = Long.parseLong(entry[1]);
+                    long actual = 0;
+                    for (long n : divide(fen, depth, pool, cache).values()) actual += n;
+                    boolean ok = actual == expected;
+                    allPassed &= ok;
+                    System.out.println((ok ? "OK   " : "FAIL ") + "D" + depth + " " + actual
+                            + (ok ? "" : " (expected " + expected + ")") + "  " + fen);
+                }
+            }
+        }
+        return allPassed;
+    }
+}
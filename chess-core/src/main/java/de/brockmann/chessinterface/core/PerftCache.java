@@ -0,0 +1,42 @@
+package de.brockmann.chessinterface.core;
+
+/**
+ * Fixed-size node count cache for perft, keyed by Zobrist hash and depth.
+ * Each slot stores {@code key ^ count} next to {@code count}; a torn write
+ * from a concurrent thread fails the XOR check and reads as a miss, so the
+ * table can be shared without locks.
+ */
+public final class PerftCache {
+
+    private final long[] checks;
+    private final long[] counts;
+    private final int mask;
+
+    public PerftCache(int sizeMb) {
+        // two longs per slot, rounded down to a power of two
+        long slots = Math.max(1024, (long) sizeMb * 1024 * 1024 / 16);
+        int size = Integer.highestOneBit((int) Math.min(slots, 1 << 28));
+        checks = new long[size];
+        counts = new long[size];
+        mask = size - 1;
+    }
+
+    private static long key(long hash, int depth) {
+        return hash ^ (depth * 0x9E3779B97F4A7C15L);
+    }
+
+    /** Cached node count, or -1 on a miss. */
+    public long get(long hash, int depth) {
+        long key = key(hash, depth);
+        int index = (int) key & mask;
+        long count = counts[index];
+        return (checks[index] ^ count) == key ? count : -1;
+    }
+
+    public void put(long hash, int depth, long count) {
+        long key = key(hash, depth);
+        int index = (int) key & mask;
+        counts[index] = count;
+        checks[index] = key ^ count;
+    }
+}
@@ -0,0 +1,60 @@
+package de.brockmann.chessinterface.core;
+
+/**
+ * Integer piece codes used by {@link Position}. White pieces occupy 0..5,
+ * black pieces 6..11, so {@code piece / 6} yields the colour and
+ * {@code piece % 6} the type.
+ */
+public final class Piece {
+
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+
+    public static final int NONE = -1;
+
+    public static final int W_PAWN = 0;
+    public static final int W_KNIGHT = 1;
+    public static final int W_BISHOP = 2;
+    public static final int W_ROOK = 3;
+    public static final int W_QUEEN = 4;
+    public static final int W_KING = 5;
+    public static final int B_PAWN = 6;
+    public static final int B_KNIGHT = 7;
+    public static final int B_BISHOP = 8;
+    public static final int B_ROOK = 9;
+    public static final int B_QUEEN = 10;
+    public static final int B_KING = 11;
+
+    private static final String CHARS = "PNBRQKpnbrqk";
+
+    private Piece() {}
+
+    public static int make(int color, int type) {
+        return color * 6 + type;
+    }
+
+    public static int color(int piece) {
+        return piece / 6;
+    }
+
+    public static int type(int piece) {
+        return piece % 6;
+    }
+
+    /** FEN letter of a piece, or ' ' for {@link #NONE}. */
+    public static char toChar(int piece) {
+        return piece == NONE ? ' ' : CHARS.charAt(piece);
+    }
+
+    /** Piece code for a FEN letter, or {@link #NONE} if the letter is unknown. */
+    public static int fromChar(char c) {
+        return CHARS.indexOf(c);
+    }
+}
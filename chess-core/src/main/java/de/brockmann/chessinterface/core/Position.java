@@ -0,0 +1,544 @@
+package de.brockmann.chessinterface.core;
+
+/**
+ * Chess position backed by twelve piece bitboards plus a mailbox for fast
+ * square lookups. Castling rights are packed into a four bit mask, the
+ * en passant target is stored as a square index.
+ */
+public final class Position {
+
+    public static final String START_FEN =
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    public static final int CASTLE_WHITE_KINGSIDE = 1;
+    public static final int CASTLE_WHITE_QUEENSIDE = 2;
+    public static final int CASTLE_BLACK_KINGSIDE = 4;
+    public static final int CASTLE_BLACK_QUEENSIDE = 8;
+
+    private static final int UNDO_CAPACITY = 512;
+
+    // castling rights that survive a move touching the square
+    private static final int[] CASTLING_MASK = new int[64];
+
+    static {
+        for (int i = 0; i < 64; i++) CASTLING_MASK[i] = 15;
+        CASTLING_MASK[Square.of(7, 4)] &= ~(CASTLE_WHITE_KINGSIDE | CASTLE_WHITE_QUEENSIDE);
+        CASTLING_MASK[Square.of(7, 7)] &= ~CASTLE_WHITE_KINGSIDE;
+        CASTLING_MASK[Square.of(7, 0)] &= ~CASTLE_WHITE_QUEENSIDE;
+        CASTLING_MASK[Square.of(0, 4)] &= ~(CASTLE_BLACK_KINGSIDE | CASTLE_BLACK_QUEENSIDE);
+        CASTLING_MASK[Square.of(0, 7)] &= ~CASTLE_BLACK_KINGSIDE;
+        CASTLING_MASK[Square.of(0, 0)] &= ~CASTLE_BLACK_QUEENSIDE;
+    }
+
+    private final long[] pieces = new long[12];
+    private final long[] colors = new long[2];
+    private final int[] board = new int[64];
+
+    private int sideToMove;
+    private int castling;
+    private int epSquare;
+    private int halfmoveClock;
+    private int fullmoveNumber;
+    private long hash;
+
+    // undo stack, grown by doubling if a game ever gets longer
+    private int[] undoMoves = new int[UNDO_CAPACITY];
+    private long[] undoStates = new long[UNDO_CAPACITY];
+    private long[] undoHashes = new long[UNDO_CAPACITY];
+    private int undoSize;
+
+    public Position() {
+        loadFromFEN(START_FEN);
+    }
+
+    public Position(String fen) {
+        loadFromFEN(fen);
+    }
+
+    // --- accessors ---
+
+    public int pieceAt(int sq) {
+        return board[sq];
+    }
+
+    public long pieces(int piece) {
+        return pieces[piece];
+    }
+
+    public long occupancy(int color) {
+        return colors[color];
+    }
+
+    public long occupied() {
+        return colors[Piece.WHITE] | colors[Piece.BLACK];
+    }
+
+    public int sideToMove() {
+        return sideToMove;
+    }
+
+    public boolean whiteToMove() {
+        return sideToMove == Piece.WHITE;
+    }
+
+    public int castlingRights() {
+        return castling;
+    }
+
+    public int epSquare() {
+        return epSquare;
+    }
+
+    public int halfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public int fullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    /** Zobrist key of the position, maintained incrementally. */
+    public long hash() {
+        return hash;
+    }
+
+    public int kingSquare(int color) {
+        long king = pieces[Piece.make(color, Piece.KING)];
+        return king == 0 ? Square.NONE : Long.numberOfTrailingZeros(king);
+    }
+
+    /** Copies the state of {@code other} into this position; the undo stack is not copied. */
+    public void copyFrom(Position other) {
+        System.arraycopy(other.pieces, 0, pieces, 0, 12);
+        System.arraycopy(other.board, 0, board, 0, 64);
+        colors[0] = other.colors[0];
+        colors[1] = other.colors[1];
+        sideToMove = other.sideToMove;
+        castling = other.castling;
+        epSquare = other.epSquare;
+        halfmoveClock = other.halfmoveClock;
+        fullmoveNumber = other.fullmoveNumber;
+        hash = other.hash;
+        undoSize = 0;
+    }
+
+    // --- board manipulation ---
+
+    private void putPiece(int sq, int piece) {
+        long b = 1L << sq;
+        pieces[piece] |= b;
+        colors[Piece.color(piece)] |= b;
+        board[sq] = piece;
+        hash ^= Zobrist.PIECE_SQUARE[piece][sq];
+    }
+
+    private void removePiece(int sq) {
+        int piece = board[sq];
+        long b = ~(1L << sq);
+        pieces[piece] &= b;
+        colors[Piece.color(piece)] &= b;
+        board[sq] = Piece.NONE;
+        hash ^= Zobrist.PIECE_SQUARE[piece][sq];
+    }
+
+    private void movePiece(int from, int to) {
+        int piece = board[from];
+        long b = (1L << from) | (1L << to);
+        pieces[piece] ^= b;
+        colors[Piece.color(piece)] ^= b;
+        board[from] = Piece.NONE;
+        board[to] = piece;
+        hash ^= Zobrist.PIECE_SQUARE[piece][from] ^ Zobrist.PIECE_SQUARE[piece][to];
+    }
+
+    // the en passant file only counts if a pawn could actually capture there
+    private long epKey() {
+        if (epSquare == Square.NONE) return 0L;
+        long capturers = Bitboards.PAWN_ATTACKS[sideToMove ^ 1][epSquare]
+                & pieces[Piece.make(sideToMove, Piece.PAWN)];
+        return capturers == 0 ? 0L : Zobrist.EP_FILE[Square.col(epSquare)];
+    }
+
+    /** Computes the Zobrist key from scratch. */
+    public long computeHash() {
+        long h = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            if (board[sq] != Piece.NONE) h ^= Zobrist.PIECE_SQUARE[board[sq]][sq];
+        }
+        h ^= Zobrist.CASTLING[castling];
+        h ^= epKey();
+        if (sideToMove == Piece.BLACK) h ^= Zobrist.SIDE;
+        return h;
+    }
+
+    // --- attacks ---
+
+    /** Returns whether {@code sq} is attacked by any piece of {@code byColor}. */
+    public boolean isSquareAttacked(int sq, int byColor) {
+        int off = byColor * 6;
+        // a pawn of byColor attacks sq if a pawn of the other colour on sq would attack it
+        if ((Bitboards.PAWN_ATTACKS[byColor ^ 1][sq] & pieces[off + Piece.PAWN]) != 0) return true;
+        if ((Bitboards.KNIGHT_ATTACKS[sq] & pieces[off + Piece.KNIGHT]) != 0) return true;
+        if ((Bitboards.KING_ATTACKS[sq] & pieces[off + Piece.KING]) != 0) return true;
+        long occ = occupied();
+        long queens = pieces[off + Piece.QUEEN];
+        if ((Bitboards.rookAttacks(sq, occ) & (pieces[off + Piece.ROOK] | queens)) != 0) return true;
+        return (Bitboards.bishopAttacks(sq, occ) & (pieces[off + Piece.BISHOP] | queens)) != 0;
+    }
+
+    /** All pieces of {@code byColor} attacking {@code sq}, given the occupancy {@code occ}. */
+    public long attackersTo(int sq, int byColor, long occ) {
+        int off = byColor * 6;
+        long queens = pieces[off + Piece.QUEEN];
+        return (Bitboards.PAWN_ATTACKS[byColor ^ 1][sq] & pieces[off + Piece.PAWN])
+                | (Bitboards.KNIGHT_ATTACKS[sq] & pieces[off + Piece.KNIGHT])
+                | (Bitboards.KING_ATTACKS[sq] & pieces[off + Piece.KING])
+                | (Bitboards.rookAttacks(sq, occ) & (pieces[off + Piece.ROOK] | queens))
+                | (Bitboards.bishopAttacks(sq, occ) & (pieces[off + Piece.BISHOP] | queens));
+    }
+
+    public boolean isInCheck(int color) {
+        int king = kingSquare(color);
+        return king != Square.NONE && isSquareAttacked(king, color ^ 1);
+    }
+
+    public boolean isInCheck() {
+        return isInCheck(sideToMove);
+    }
+
+    // --- move validation ---
+
+    /** Checks a move for the side to move, ignoring whether it leaves the king in check. */
+    public boolean isPseudoLegal(int from, int to) {
+        if (from == to || from < 0 || from > 63 || to < 0 || to > 63) return false;
+        int piece = board[from];
+        if (piece == Piece.NONE || Piece.color(piece) != sideToMove) return false;
+        int target = board[to];
+        if (target != Piece.NONE && Piece.color(target) == sideToMove) return false;
+
+        long toBit = 1L << to;
+        long occ = occupied();
+        switch (Piece.type(piece)) {
+            case Piece.PAWN:
+                return isPawnMoveValid(from, to, target);
+            case Piece.KNIGHT:
+                return (Bitboards.KNIGHT_ATTACKS[from] & toBit) != 0;
+            case Piece.BISHOP:
+                return (Bitboards.bishopAttacks(from, occ) & toBit) != 0;
+            case Piece.ROOK:
+                return (Bitboards.rookAttacks(from, occ) & toBit) != 0;
+            case Piece.QUEEN:
+                return (Bitboards.queenAttacks(from, occ) & toBit) != 0;
+            case Piece.KING:
+                return (Bitboards.KING_ATTACKS[from] & toBit) != 0 || isCastlingMove(from, to);
+            default:
+                return false;
+        }
+    }
+
+    private boolean isPawnMoveValid(int from, int to, int target) {
+        int forward = sideToMove == Piece.WHITE ? -8 : 8;
+        int startRow = sideToMove == Piece.WHITE ? 6 : 1;
+        if (target == Piece.NONE) {
+            if (to == from + forward) return true;
+            if (to == from + 2 * forward && Square.row(from) == startRow) {
+                return board[from + forward] == Piece.NONE;
+            }
+        }
+        if ((Bitboards.PAWN_ATTACKS[sideToMove][from] & (1L << to)) == 0) return false;
+        return target != Piece.NONE || to == epSquare;
+    }
+
+    private boolean isCastlingMove(int from, int to) {
+        int homeRow = sideToMove == Piece.WHITE ? 7 : 0;
+        if (from != Square.of(homeRow, 4) || Square.row(to) != homeRow) return false;
+        int enemy = sideToMove ^ 1;
+        int rook = Piece.make(sideToMove, Piece.ROOK);
+        if (to == from + 2) {
+            int right = sideToMove == Piece.WHITE ? CASTLE_WHITE_KINGSIDE : CASTLE_BLACK_KINGSIDE;
+            if ((castling & right) == 0 || board[from + 3] != rook) return false;
+            if (board[from + 1] != Piece.NONE || board[from + 2] != Piece.NONE) return false;
+            return !isSquareAttacked(from, enemy) && !isSquareAttacked(from + 1, enemy)
+                    && !isSquareAttacked(from + 2, enemy);
+        } else if (to == from - 2) {
+            int right = sideToMove == Piece.WHITE ? CASTLE_WHITE_QUEENSIDE : CASTLE_BLACK_QUEENSIDE;
+            if ((castling & right) == 0 || board[from - 4] != rook) return false;
+            if (board[from - 1] != Piece.NONE || board[from - 2] != Piece.NONE
+                    || board[from - 3] != Piece.NONE) return false;
+            return !isSquareAttacked(from, enemy) && !isSquareAttacked(from - 1, enemy)
+                    && !isSquareAttacked(from - 2, enemy);
+        }
+        return false;
+    }
+
+    /** Full legality check: pseudo-legal and the own king is not left in check. */
+    public boolean isLegal(int from, int to) {
+        if (!isPseudoLegal(from, to)) return false;
+        int us = sideToMove;
+        makeMove(Move.encode(from, to));
+        boolean legal = !isInCheck(us);
+        unmakeMove();
+        return legal;
+    }
+
+    // --- make / unmake ---
+
+    /**
+     * Plays an encoded {@link Move} without validating it and pushes the
+     * information needed by {@link #unmakeMove()}. A pawn reaching the last
+     * rank promotes to the move's promotion type, or to a queen if none is set.
+     */
+    public void makeMove(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int piece = board[from];
+        int us = sideToMove;
+        boolean pawnMove = Piece.type(piece) == Piece.PAWN;
+        boolean promotion = pawnMove && (Square.row(to) == 0 || Square.row(to) == 7);
+        int promotionType = Move.promotion(move) == 0 ? Piece.QUEEN : Move.promotion(move);
+        int captured = board[to];
+        boolean enPassant = pawnMove && to == epSquare && captured == Piece.NONE;
+
+        pushUndo((move & ~(7 << 12)) | ((promotion ? promotionType : 0) << 12),
+                enPassant ? Piece.make(us ^ 1, Piece.PAWN) : captured, enPassant);
+        hash ^= epKey() ^ Zobrist.CASTLING[castling];
+
+        if (captured != Piece.NONE) {
+            removePiece(to);
+        } else if (enPassant) {
+            removePiece(to + (us == Piece.WHITE ? 8 : -8));
+        }
+        movePiece(from, to);
+
+        if (promotion) {
+            removePiece(to);
+            putPiece(to, Piece.make(us, promotionType));
+        }
+        if (Piece.type(piece) == Piece.KING && Math.abs(to - from) == 2) {
+            boolean kingside = to > from;
+            movePiece(kingside ? from + 3 : from - 4, kingside ? from + 1 : from - 1);
+        }
+
+        castling &= CASTLING_MASK[from] & CASTLING_MASK[to];
+        epSquare = pawnMove && Math.abs(to - from) == 16 ? (from + to) / 2 : Square.NONE;
+        halfmoveClock = pawnMove || captured != Piece.NONE || enPassant ? 0 : halfmoveClock + 1;
+        if (us == Piece.BLACK) fullmoveNumber++;
+        sideToMove = us ^ 1;
+        hash ^= Zobrist.SIDE ^ Zobrist.CASTLING[castling] ^ epKey();
+    }
+
+    /** Takes back the last move played with {@link #makeMove(int)}. */
+    public void unmakeMove() {
+        if (undoSize == 0) throw new IllegalStateException("No move to take back");
+        int top = --undoSize;
+        int move = undoMoves[top];
+        long state = undoStates[top];
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int us = sideToMove ^ 1;
+
+        if (Move.promotion(move) != 0) {
+            removePiece(to);
+            putPiece(to, Piece.make(us, Piece.PAWN));
+        }
+        if (Piece.type(board[to]) == Piece.KING && Math.abs(to - from) == 2) {
+            boolean kingside = to > from;
+            movePiece(kingside ? from + 1 : from - 1, kingside ? from + 3 : from - 4);
+        }
+        movePiece(to, from);
+
+        int captured = (int) (state & 15) - 1;
+        if (captured != Piece.NONE) {
+            boolean enPassant = ((state >>> 31) & 1) != 0;
+            putPiece(enPassant ? to + (us == Piece.WHITE ? 8 : -8) : to, captured);
+        }
+
+        castling = (int) ((state >>> 4) & 15);
+        epSquare = (int) ((state >>> 8) & 127) - 1;
+        halfmoveClock = (int) ((state >>> 15) & 0xFFFF);
+        if (us == Piece.BLACK) fullmoveNumber--;
+        sideToMove = us;
+        hash = undoHashes[top];
+    }
+
+    /**
+     * Passes the turn without moving, for null-move pruning. Must be undone
+     * with {@link #unmakeNullMove()} before any other move is taken back.
+     */
+    public void makeNullMove() {
+        pushUndo(Move.NONE, Piece.NONE, false);
+        hash ^= epKey();
+        epSquare = Square.NONE;
+        halfmoveClock++;
+        sideToMove ^= 1;
+        hash ^= Zobrist.SIDE;
+    }
+
+    public void unmakeNullMove() {
+        int top = --undoSize;
+        long state = undoStates[top];
+        epSquare = (int) ((state >>> 8) & 127) - 1;
+        halfmoveClock = (int) ((state >>> 15) & 0xFFFF);
+        sideToMove ^= 1;
+        hash = undoHashes[top];
+    }
+
+    /**
+     * Whether the current position already occurred since the last
+     * irreversible move, looking only at moves on the undo stack.
+     */
+    public boolean isRepetition() {
+        int window = Math.min(halfmoveClock, undoSize);
+        for (int i = 4; i <= window; i += 2) {
+            if (undoHashes[undoSize - i] == hash) return true;
+        }
+        return false;
+    }
+
+    /** Number of moves that can be taken back with {@link #unmakeMove()}. */
+    public int undoDepth() {
+        return undoSize;
+    }
+
+    /** The most recently played move, or {@link Move#NONE}. */
+    public int lastMove() {
+        return undoSize == 0 ? Move.NONE : undoMoves[undoSize - 1];
+    }
+
+    /** Zobrist key of the position {@code pliesAgo} moves back, for repetition checks. */
+    public long hashBefore(int pliesAgo) {
+        return undoHashes[undoSize - pliesAgo];
+    }
+
+    // packs captured piece, castling rights, en passant square and halfmove clock
+    private void pushUndo(int move, int captured, boolean enPassant) {
+        if (undoSize == undoMoves.length) {
+            int capacity = undoSize * 2;
+            undoMoves = java.util.Arrays.copyOf(undoMoves, capacity);
+            undoStates = java.util.Arrays.copyOf(undoStates, capacity);
+            undoHashes = java.util.Arrays.copyOf(undoHashes, capacity);
+        }
+        undoMoves[undoSize] = move;
+        undoStates[undoSize] = (captured + 1)
+                | ((long) castling << 4)
+                | ((long) (epSquare + 1) << 8)
+                | ((long) (halfmoveClock & 0xFFFF) << 15)
+                | (enPassant ? 1L << 31 : 0L);
+        undoHashes[undoSize] = hash;
+        undoSize++;
+    }
+
+    // --- FEN I/O ---
+
+    /**
+     * Loads a FEN string. Missing trailing fields fall back to defaults.
+     *
+     * @throws IllegalArgumentException if the placement does not have eight
+     *         ranks of eight squares and one king per side, or the side field
+     *         is neither "w" nor "b"
+     */
+    public void loadFromFEN(String fen) {
+        String[] parts = fen.trim().split("\\s+");
+        if (parts.length < 2) throw new IllegalArgumentException("Invalid FEN: " + fen);
+        if (!parts[1].equals("w") && !parts[1].equals("b")) {
+            throw new IllegalArgumentException("Invalid side to move in FEN: " + fen);
+        }
+
+        long[] newPieces = new long[12];
+        int[] newBoard = new int[64];
+        java.util.Arrays.fill(newBoard, Piece.NONE);
+        String[] ranks = parts[0].split("/", -1);
+        if (ranks.length != 8) throw new IllegalArgumentException("Invalid FEN: " + fen);
+        int idx = 0;
+        for (String rank : ranks) {
+            int end = idx + 8;
+            for (int i = 0; i < rank.length(); i++) {
+                char ch = rank.charAt(i);
+                if (ch >= '1' && ch <= '8') {
+                    idx += ch - '0';
+                } else {
+                    int piece = Piece.fromChar(ch);
+                    if (piece == Piece.NONE || idx >= end) {
+                        throw new IllegalArgumentException("Invalid FEN: " + fen);
+                    }
+                    newPieces[piece] |= 1L << idx;
+                    newBoard[idx++] = piece;
+                }
+            }
+            // every rank must fill exactly its eight squares
+            if (idx != end) throw new IllegalArgumentException("Invalid FEN: " + fen);
+        }
+        if (Long.bitCount(newPieces[Piece.W_KING]) != 1 || Long.bitCount(newPieces[Piece.B_KING]) != 1) {
+            throw new IllegalArgumentException("FEN needs one king per side: " + fen);
+        }
+
+        System.arraycopy(newPieces, 0, pieces, 0, 12);
+        System.arraycopy(newBoard, 0, board, 0, 64);
+        colors[Piece.WHITE] = 0;
+        colors[Piece.BLACK] = 0;
+        for (int p = 0; p < 12; p++) colors[Piece.color(p)] |= pieces[p];
+
+        sideToMove = parts[1].equals("b") ? Piece.BLACK : Piece.WHITE;
+
+        castling = 0;
+        String c = parts.length > 2 ? parts[2] : "-";
+        if (c.indexOf('K') >= 0) castling |= CASTLE_WHITE_KINGSIDE;
+        if (c.indexOf('Q') >= 0) castling |= CASTLE_WHITE_QUEENSIDE;
+        if (c.indexOf('k') >= 0) castling |= CASTLE_BLACK_KINGSIDE;
+        if (c.indexOf('q') >= 0) castling |= CASTLE_BLACK_QUEENSIDE;
+
+        epSquare = parts.length > 3 ? Square.fromAlgebraic(parts[3]) : Square.NONE;
+
+        halfmoveClock = 0;
+        fullmoveNumber = 1;
+        if (parts.length > 4) {
+            try { halfmoveClock = Integer.parseInt(parts[4]); } catch (NumberFormatException ignored) {}
+        }
+        if (parts.length > 5) {
+            try { fullmoveNumber = Integer.parseInt(parts[5]); } catch (NumberFormatException ignored) {}
+        }
+        hash = computeHash();
+        undoSize = 0;
+    }
+
+    public String getFEN() {
+        StringBuilder sb = new StringBuilder(90);
+        for (int row = 0; row < 8; row++) {
+            int empty = 0;
+            for (int col = 0; col < 8; col++) {
+                int piece = board[Square.of(row, col)];
+                if (piece == Piece.NONE) {
+                    empty++;
+                } else {
+                    if (empty > 0) { sb.append(empty); empty = 0; }
+                    sb.append(Piece.toChar(piece));
+                }
+            }
+            if (empty > 0) sb.append(empty);
+            if (row < 7) sb.append('/');
+        }
+
+        sb.append(sideToMove == Piece.WHITE ? " w " : " b ");
+
+        if (castling == 0) {
+            sb.append('-');
+        } else {
+            if ((castling & CASTLE_WHITE_KINGSIDE) != 0) sb.append('K');
+            if ((castling & CASTLE_WHITE_QUEENSIDE) != 0) sb.append('Q');
+            if ((castling & CASTLE_BLACK_KINGSIDE) != 0) sb.append('k');
+            if ((castling & CASTLE_BLACK_QUEENSIDE) != 0) sb.append('q');
+        }
+        sb.append(' ');
+        sb.append(epSquare == Square.NONE ? "-" : Square.toAlgebraic(epSquare));
+        sb.append(' ').append(halfmoveClock);
+        sb.append(' ').append(fullmoveNumber);
+        return sb.toString();
+    }
+
+    /** Board as 64 single-letter strings (" " for empty), for view code. */
+    public String[] toStringBoard() {
+        String[] out = new String[64];
+        for (int i = 0; i < 64; i++) out[i] = String.valueOf(Piece.toChar(board[i]));
+        return out;
+    }
+}
@@ -0,0 +1,51 @@
+package de.brockmann.chessinterface.core;
+
+/**
+ * Hash keys of the positions since the last irreversible move (capture
+ * or pawn move). Only this window can contain
+ * repetitions, so lookups stop at the last halfmove clock reset and never
+ * allocate. Earlier keys are kept so moves can be taken back.
+ */
+public final class RepetitionHistory {
+
+    private long[] keys = new long[128];
+    // index where the reversible window of each entry begins
+    private int[] windowStarts = new int[128];
+    private int size;
+    private int windowStart;
+
+    public void clear() {
+        size = 0;
+        windowStart = 0;
+    }
+
+    /** Records a position reached with the given halfmove clock. */
+    public void push(long key, int halfmoveClock) {
+        if (halfmoveClock == 0) windowStart = size;
+        if (size == keys.length) {
+            keys = java.util.Arrays.copyOf(keys, size * 2);
+            windowStarts = java.util.Arrays.copyOf(windowStarts, size * 2);
+        }
+        windowStarts[size] = windowStart;
+        keys[size++] = key;
+    }
+
+    /** Forgets the latest position, e.g. when a move is taken back. */
+    public void pop() {
+        if (size == 0) return;
+        size--;
+        windowStart = size == 0 ? 0 : windowStarts[size - 1];
+    }
+
+    /**
+     * How often {@code key} occurs in the window. Only every second entry
+     * counted back from the latest one has the same side to move.
+     */
+    public int count(long key) {
+        int n = 0;
+        for (int i = size - 1; i >= windowStart; i -= 2) {
+            if (keys[i] == key) n++;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,37 @@
+package de.brockmann.chessinterface.core;
+
+/**
+ * Square helpers. Squares are numbered like the board grid in the UI:
+ * index 0 is a8, index 7 is h8 and index 63 is h1.
+ */
+public final class Square {
+
+    public static final int NONE = -1;
+
+    private Square() {}
+
+    public static int row(int sq) {
+        return sq >>> 3;
+    }
+
+    public static int col(int sq) {
+        return sq & 7;
+    }
+
+    public static int of(int row, int col) {
+        return (row << 3) | col;
+    }
+
+    /** Parses a square like "e4". Returns {@link #NONE} for malformed input. */
+    public static int fromAlgebraic(String s) {
+        if (s == null || s.length() < 2) return NONE;
+        int file = s.charAt(0) - 'a';
+        int rank = s.charAt(1) - '1';
+        if (file < 0 || file > 7 || rank < 0 || rank > 7) return NONE;
+        return of(7 - rank, file);
+    }
+
+    public static String toAlgebraic(int sq) {
+        return new String(new char[]{(char) ('a' + col(sq)), (char) ('8' - row(sq))});
+    }
+}
@@ -0,0 +1,34 @@
+package de.brockmann.chessinterface.core;
+
+/**
+ * Random keys for incremental 64-bit position hashing. The keys are
+ * generated from a fixed seed so hashes are stable across runs.
+ */
+public final class Zobrist {
+
+    static final long[][] PIECE_SQUARE = new long[12][64];
+    static final long[] CASTLING = new long[16];
+    static final long[] EP_FILE = new long[8];
+    static final long SIDE;
+
+    static {
+        long seed = 0x9E3779B97F4A7C15L;
+        long[] state = {seed};
+        for (int p = 0; p < 12; p++) {
+            for (int sq = 0; sq < 64; sq++) PIECE_SQUARE[p][sq] = next(state);
+        }
+        for (int i = 0; i < 16; i++) CASTLING[i] = next(state);
+        for (int i = 0; i < 8; i++) EP_FILE[i] = next(state);
+        SIDE = next(state);
+    }
+
+    private Zobrist() {}
+
+    // SplitMix64
+    private static long next(long[] state) {
+        long z = (state[0] += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
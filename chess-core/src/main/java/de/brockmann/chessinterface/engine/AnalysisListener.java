@@ -0,0 +1,11 @@
+package de.brockmann.chessinterface.engine;
+
+/**
+ * Receives intermediate results while an analysis deepens. Called on the
+ * engine's thread.
+ */
+public interface AnalysisListener {
+
+    /** A search to {@code info.getDepth()} has completed. */
+    void onInfo(AnalysisResult info);
+}
@@ -0,0 +1,104 @@
+package de.brockmann.chessinterface.engine;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of an engine search. Scores are in centipawns from the point of
+ * view of the side to move; {@link #getMate()} is non-zero for forced mates
+ * (positive if the side to move mates).
+ *
+ * <p>A MultiPV search also carries its best lines, best first, each as a
+ * result of its own; see {@link #getLines()}.
+ */
+public final class AnalysisResult {
+
+    private final String bestMove;
+    private final int score;
+    private final int mate;
+    private final int depth;
+    private final List<String> pv;
+    private final long nodes;
+    private final long timeMs;
+    private final long[] threadNodes;
+    private final List<AnalysisResult> lines;
+
+    public AnalysisResult(String bestMove, int score, int mate, int depth,
+                          List<String> pv, long nodes, long timeMs) {
+        this(bestMove, score, mate, depth, pv, timeMs, new long[] {nodes});
+    }
+
+    /** Result of a multi-threaded search; {@code threadNodes[0]} is the main thread. */
+    public AnalysisResult(String bestMove, int score, int mate, int depth,
+                          List<String> pv, long timeMs, long[] threadNodes) {
+        this(bestMove, score, mate, depth, pv, timeMs, threadNodes, null);
+    }
+
+    /** @param lines the best lines including this one, or null for a single line */
+    public AnalysisResult(String bestMove, int score, int mate, int depth,
+                          List<String> pv, long timeMs, long[] threadNodes,
+                          List<AnalysisResult> lines) {
+        this.bestMove = bestMove;
+        this.score = score;
+        this.mate = mate;
+        this.depth = depth;
+        this.pv = pv == null ? Collections.<String>emptyList() : Collections.unmodifiableList(pv);
+        long total = 0;
+        for (long n : threadNodes) total += n;
+        this.nodes = total;
+        this.timeMs = timeMs;
+        this.threadNodes = threadNodes.clone();
+        this.lines = lines == null ? null : Collections.unmodifiableList(lines);
+    }
+
+    public String getBestMove() {
+        return bestMove;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getMate() {
+        return mate;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public List<String> getPv() {
+        return pv;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getTimeMs() {
+        return timeMs;
+    }
+
+    /** Nodes per second over all threads, 0 if no time was measured. */
+    public long getNps() {
+        return timeMs > 0 ? nodes * 1000 / timeMs : 0;
+    }
+
+    /** The best lines, best first; just this result for a single-line search. */
+    public List<AnalysisResult> getLines() {
+        return lines != null ? lines : Collections.singletonList(this);
+    }
+
+    public int getThreadCount() {
+        return threadNodes.length;
+    }
+
+    public long getThreadNodes(int thread) {
+        return threadNodes[thread];
+    }
+
+    /** Nodes per second of a single search thread. */
+    public long getThreadNps(int thread) {
+        return timeMs > 0 ? threadNodes[thread] * 1000 / timeMs : 0;
+    }
+}
@@ -0,0 +1,69 @@
+package de.brockmann.chessinterface.engine;
+
+/**
+ * Plays from an opening book while it has an answer and asks the wrapped
+ * engine only after that. Analysis always goes to the engine, a book move
+ * says nothing about the evaluation.
+ */
+public class BookEngine implements ChessEngine {
+
+    private final ChessEngine engine;
+    private final PolyglotBook book;
+
+    public BookEngine(ChessEngine engine, PolyglotBook book) {
+        this.engine = engine;
+        this.book = book;
+    }
+
+    @Override
+    public boolean start() {
+        return engine.start();
+    }
+
+    @Override
+    public void stop() {
+        engine.stop();
+    }
+
+    @Override
+    public void cancel() {
+        engine.cancel();
+    }
+
+    @Override
+    public void setElo(int elo) {
+        engine.setElo(elo);
+    }
+
+    @Override
+    public void setMultiPv(int lines) {
+        engine.setMultiPv(lines);
+    }
+
+    @Override
+    public String getBestMove(String fen, int depth) {
+        String move = book.getMove(fen);
+        return move != null ? move : engine.getBestMove(fen, depth);
+    }
+
+    @Override
+    public String getBestMove(String fen, SearchLimits limits) {
+        String move = book.getMove(fen);
+        return move != null ? move : engine.getBestMove(fen, limits);
+    }
+
+    @Override
+    public AnalysisResult analyse(String fen, int depth) {
+        return engine.analyse(fen, depth);
+    }
+
+    @Override
+    public AnalysisResult analyse(String fen, SearchLimits limits) {
+        return engine.analyse(fen, limits);
+    }
+
+    @Override
+    public void analyseInfinite(String fen, AnalysisListener listener) {
+        engine.analyseInfinite(fen, listener);
+    }
+}
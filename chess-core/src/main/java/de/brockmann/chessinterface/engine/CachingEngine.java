@@ -0,0 +1,434 @@
+package de.brockmann.chessinterface.engine;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches analysis results of another engine. Positions are keyed by the
+ * first four FEN fields, so move counters do not matter. A result counts for
+ * the depth the engine reached, which may be less than requested when a
+ * search runs out of time, and also answers every shallower request.
+ *
+ * <p>The in-memory part is an LRU bounded by entry count and by an estimate
+ * of the bytes used. If a directory is given, finished results are also
+ * written there as small text files and read back on a memory miss, e.g.
+ * from the app's cache directory, which the system may clear at any time.
+ * The directory holds at most {@link #MAX_DISK_FILES} files; the least
+ * recently used ones are deleted beyond that. Streaming analysis only
+ * writes its deepest result, once it ends.
+ *
+ * <p>{@link #withEngine} gives a second engine access to the same cache, so
+ * e.g. a background batch and the interactive analysis can be cancelled
+ * independently and still share their results.
+ *
+ * <p>An entry also remembers how many lines it was searched with. A search
+ * through {@link #analyse} only takes entries with at least as many lines
+ * as set by {@link #setMultiPv}; {@link #peek} and {@link #lookup} take any
+ * entry, whose best line and evaluation are always there.
+ */
+public class CachingEngine implements ChessEngine {
+
+    public static final int MAX_DISK_FILES = 4000;
+    private static final int ENTRY_OVERHEAD_BYTES = 160;
+
+    private final ChessEngine engine;
+    private final Store store;
+    private volatile int multiPv = 1;
+
+    /** The cache itself; all access synchronizes on it. */
+    private static final class Store {
+        final int maxEntries;
+        final long maxBytes;
+        final File diskDir;
+        final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(64, 0.75f, true);
+        long bytes;
+        // files in diskDir, counted on the first write
+        int diskFiles = -1;
+
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong diskHits = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+
+        Store(int maxEntries, long maxBytes, File diskDir) {
+            this.maxEntries = maxEntries;
+            this.maxBytes = maxBytes;
+            this.diskDir = diskDir;
+        }
+    }
+
+    private static final class Entry {
+        final int depth;
+        final int lines;
+        final AnalysisResult result;
+        final int size;
+
+        Entry(String key, int depth, int lines, AnalysisResult result) {
+            this.depth = depth;
+            this.lines = lines;
+            this.result = result;
+            int pvChars = 0;
+            for (AnalysisResult line : result.getLines()) {
+                for (String move : line.getPv()) pvChars += move.length() + 40;
+            }
+            this.size = ENTRY_OVERHEAD_BYTES + 2 * key.length() + pvChars;
+        }
+
+        boolean answers(int depth, int lines) {
+            return this.depth >= depth && this.lines >= lines;
+        }
+    }
+
+    public CachingEngine(ChessEngine engine, int maxEntries, long maxBytes) {
+        this(engine, maxEntries, maxBytes, null);
+    }
+
+    /**
+     * @param diskDir directory for the on-disk store, or null for memory only;
+     *                if it cannot be created the cache stays in memory
+     */
+    public CachingEngine(ChessEngine engine, int maxEntries, long maxBytes, File diskDir) {
+        this(engine, new Store(maxEntries, maxBytes, usableDir(diskDir)));
+    }
+
+    private static File usableDir(File dir) {
+        if (dir == null || dir.isDirectory() || dir.mkdirs()) return dir;
+        return null;
+    }
+
+    private CachingEngine(ChessEngine engine, Store store) {
+        this.engine = engine;
+        this.store = store;
+    }
+
+    /**
+     * A caching engine for {@code other} that shares this cache and its
+     * counters. It starts with this engine's number of lines.
+     */
+    public CachingEngine withEngine(ChessEngine other) {
+        CachingEngine shared = new CachingEngine(other, store);
+        shared.setMultiPv(multiPv);
+        return shared;
+    }
+
+    public ChessEngine getEngine() {
+        return engine;
+    }
+
+    @Override
+    public boolean start() {
+        return engine.start();
+    }
+
+    @Override
+    public void stop() {
+        engine.stop();
+    }
+
+    @Override
+    public void cancel() {
+        engine.cancel();
+    }
+
+    @Override
+    public void setElo(int elo) {
+        // a weaker engine would answer differently
+        clearMemory();
+        engine.setElo(elo);
+    }
+
+    @Override
+    public void setMultiPv(int lines) {
+        multiPv = Math.max(1, lines);
+        engine.setMultiPv(lines);
+    }
+
+    @Override
+    public String getBestMove(String fen, int depth) {
+        AnalysisResult result = analyse(fen, depth);
+        return result != null ? result.getBestMove() : null;
+    }
+
+    @Override
+    public AnalysisResult analyse(String fen, int depth) {
+        AnalysisResult cached = find(fen, depth, multiPv);
+        if (cached != null) return cached;
+        AnalysisResult result = engine.analyse(fen, depth);
+        if (result != null) put(fen, result.getDepth(), result);
+        return result;
+    }
+
+    /**
+     * A cached result at least as deep as the depth limit answers right
+     * away; otherwise the engine searches and the result is stored for the
+     * depth it actually reached.
+     */
+    @Override
+    public AnalysisResult analyse(String fen, SearchLimits limits) {
+        AnalysisResult cached = find(fen, limits.getDepth(), multiPv);
+        if (cached != null) return cached;
+        AnalysisResult result = engine.analyse(fen, limits);
+        if (result != null) put(fen, result.getDepth(), result);
+        return result;
+    }
+
+    /**
+     * Reports the deepest cached result first, then streams the engine's
+     * results, each of which is cached in memory. Results shallower than the
+     * cached one are not passed on. Only the deepest result goes to disk,
+     * when the analysis ends, and only if it beats the cached one.
+     */
+    @Override
+    public void analyseInfinite(String fen, AnalysisListener listener) {
+        AnalysisResult cached = lookup(fen, 1);
+        int cachedDepth = cached != null ? cached.getDepth() : 0;
+        if (cached != null) listener.onInfo(cached);
+        String key = key(fen);
+        Entry[] deepest = new Entry[1];
+        try {
+            engine.analyseInfinite(fen, info -> {
+                Entry e = new Entry(key, info.getDepth(), multiPv, info);
+                if (store(key, e)) deepest[0] = e;
+                if (info.getDepth() >= cachedDepth) listener.onInfo(info);
+            });
+        } finally {
+            Entry e = deepest[0];
+            if (e != null && store.diskDir != null && e.depth > cachedDepth) writeToDisk(key, e);
+        }
+    }
+
+    /**
+     * Like {@link #lookup} but only checks memory, so it is cheap enough for
+     * the UI thread. Does not count a miss.
+     */
+    public AnalysisResult peek(String fen, int depth) {
+        return peek(fen, depth, 1);
+    }
+
+    private AnalysisResult peek(String fen, int depth, int lines) {
+        synchronized (store) {
+            Entry e = store.memory.get(key(fen));
+            if (e != null && e.answers(depth, lines)) {
+                store.hits.incrementAndGet();
+                return e.result;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Cached result for {@code fen} at {@code depth} or deeper, or null. It
+     * may have fewer lines than currently searched.
+     */
+    public AnalysisResult lookup(String fen, int depth) {
+        return find(fen, depth, 1);
+    }
+
+    private AnalysisResult find(String fen, int depth, int lines) {
+        AnalysisResult cached = peek(fen, depth, lines);
+        if (cached != null) return cached;
+        String key = key(fen);
+        if (store.diskDir != null) {
+            Entry e = readFromDisk(key);
+            if (e != null && e.answers(depth, lines)) {
+                store.diskHits.incrementAndGet();
+                store.hits.incrementAndGet();
+                putInMemory(key, e);
+                return e.result;
+            }
+        }
+        store.misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores {@code result} as the answer for {@code fen} at {@code depth},
+     * searched with the current number of lines.
+     */
+    public void put(String fen, int depth, AnalysisResult result) {
+        String key = key(fen);
+        Entry e = new Entry(key, depth, multiPv, result);
+        if (store(key, e) && store.diskDir != null) writeToDisk(key, e);
+    }
+
+    // keeps e in memory unless a deeper entry with as many lines is there
+    private boolean store(String key, Entry e) {
+        synchronized (store) {
+            Entry old = store.memory.get(key);
+            if (old != null && old.depth > e.depth && old.lines >= e.lines) return false;
+        }
+        putInMemory(key, e);
+        return true;
+    }
+
+    private void putInMemory(String key, Entry e) {
+        synchronized (store) {
+            Entry old = store.memory.put(key, e);
+            if (old != null) store.bytes -= old.size;
+            store.bytes += e.size;
+            Iterator<Entry> it = store.memory.values().iterator();
+            while ((store.memory.size() > store.maxEntries || store.bytes > store.maxBytes)
+                    && it.hasNext()) {
+                Entry eldest = it.next();
+                if (eldest == e) break;
+                store.bytes -= eldest.size;
+                it.remove();
+            }
+        }
+    }
+
+    public void clearMemory() {
+        synchronized (store) {
+            store.memory.clear();
+            store.bytes = 0;
+        }
+    }
+
+    public long getHits() {
+        return store.hits.get();
+    }
+
+    /** Hits that had to be read from the on-disk store. */
+    public long getDiskHits() {
+        return store.diskHits.get();
+    }
+
+    public long getMisses() {
+        return store.misses.get();
+    }
+
+    public int size() {
+        synchronized (store) {
+            return store.memory.size();
+        }
+    }
+
+    public long sizeBytes() {
+        synchronized (store) {
+            return store.bytes;
+        }
+    }
+
+    // board, side, castling and en passant; move counters do not change the analysis
+    static String key(String fen) {
+        String[] parts = fen.trim().split("\\s+");
+        StringBuilder sb = new StringBuilder(fen.length());
+        for (int i = 0; i < Math.min(4, parts.length); i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(parts[i]);
+        }
+        return sb.toString();
+    }
+
+    // --- disk store ---
+    // one file per position, named by a 64-bit hash of the key; the key is
+    // stored in the file as well so hash collisions read as misses
+
+    private File fileFor(String key) {
+        long h = 1125899906842597L;
+        for (int i = 0; i < key.length(); i++) h = 31 * h + key.charAt(i);
+        return new File(store.diskDir, Long.toHexString(h) + ".txt");
+    }
+
+    // key, depth, lines searched and lines stored, then per line its numbers and its pv
+    private Entry readFromDisk(String key) {
+        File f = fileFor(key);
+        if (!f.isFile()) return null;
+        try (BufferedReader r = new BufferedReader(
+                new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8))) {
+            if (!key.equals(r.readLine())) return null;
+            int depth = Integer.parseInt(r.readLine());
+            // a position can have fewer moves than lines were searched
+            String[] counts = r.readLine().split(" ");
+            int searched = Integer.parseInt(counts[0]);
+            int count = Integer.parseInt(counts[1]);
+            List<AnalysisResult> lines = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String[] v = r.readLine().split(" ");
+                String pvLine = r.readLine();
+                List<String> pv = pvLine == null || pvLine.isEmpty()
+                        ? new ArrayList<>() : Arrays.asList(pvLine.split(" "));
+                lines.add(new AnalysisResult(v[0], Integer.parseInt(v[1]),
+                        Integer.parseInt(v[2]), Integer.parseInt(v[3]), pv,
+                        Long.parseLong(v[4]), Long.parseLong(v[5])));
+            }
+            AnalysisResult best = lines.get(0);
+            AnalysisResult result = new AnalysisResult(best.getBestMove(), best.getScore(),
+                    best.getMate(), best.getDepth(), best.getPv(), best.getTimeMs(),
+                    new long[] {best.getNodes()}, count > 1 ? lines : null);
+            // recently used files survive the trimming longest
+            f.setLastModified(System.currentTimeMillis());
+            return new Entry(key, depth, searched, result);
+        } catch (IOException | RuntimeException e) {
+            // unreadable or from an older format, treat as a miss
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, Entry e) {
+        File f = fileFor(key);
+        boolean added = !f.exists();
+        File tmp = new File(store.diskDir, f.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        List<AnalysisResult> lines = e.result.getLines();
+        StringBuilder sb = new StringBuilder(256);
+        sb.append(key).append('\n').append(e.depth).append('\n')
+                .append(e.lines).append(' ').append(lines.size()).append('\n');
+        for (AnalysisResult r : lines) {
+            sb.append(r.getBestMove()).append(' ').append(r.getScore()).append(' ')
+                    .append(r.getMate()).append(' ').append(r.getDepth()).append(' ')
+                    .append(r.getNodes()).append(' ').append(r.getTimeMs()).append('\n')
+                    .append(String.join(" ", r.getPv())).append('\n');
+        }
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+            w.write(sb.toString());
+        } catch (IOException ex) {
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(f)) {
+            tmp.delete();
+            return;
+        }
+        if (added) trimDisk();
+    }
+
+    // deletes the least recently used files down to three quarters of the limit
+    private void trimDisk() {
+        synchronized (store) {
+            if (store.diskFiles < 0) {
+                File[] files = store.diskDir.listFiles((dir, name) -> name.endsWith(".txt"));
+                store.diskFiles = files == null ? 0 : files.length;
+            } else {
+                store.diskFiles++;
+            }
+            if (store.diskFiles <= MAX_DISK_FILES) return;
+            File[] files = store.diskDir.listFiles((dir, name) -> name.endsWith(".txt"));
+            if (files == null) return;
+            long[] modified = new long[files.length];
+            Integer[] order = new Integer[files.length];
+            for (int i = 0; i < files.length; i++) {
+                modified[i] = files[i].lastModified();
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(modified[a], modified[b]));
+            int keep = MAX_DISK_FILES * 3 / 4;
+            int remaining = files.length;
+            for (int i = 0; i < files.length && remaining > keep; i++) {
+                if (files[order[i]].delete()) remaining--;
+            }
+            store.diskFiles = remaining;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package de.brockmann.chessinterface.engine;
+
+/**
+ * Common interface of all engine backends, remote or on-device. Calls to
+ * {@link #getBestMove} and {@link #analyse} block and must not be made on
+ * the UI thread.
+ */
+public interface ChessEngine {
+
+    /** Prepares the engine; returns false if it cannot be used. */
+    boolean start();
+
+    /** Aborts running work and releases resources. */
+    void stop();
+
+    /**
+     * Aborts the search or request that is currently running, which then
+     * returns null. The engine stays usable.
+     */
+    void cancel();
+
+    /** Limits the playing strength to roughly the given Elo rating. */
+    void setElo(int elo);
+
+    /**
+     * Number of best lines that results should carry, see
+     * {@link AnalysisResult#getLines()}. Engines that can only find the best
+     * move ignore it.
+     */
+    default void setMultiPv(int lines) {
+    }
+
+    /** Best move for {@code fen} in UCI notation (e.g. "e2e4"), or null. */
+    String getBestMove(String fen, int depth);
+
+    /** Full result of a search of {@code fen}, or null if none is available. */
+    AnalysisResult analyse(String fen, int depth);
+
+    /**
+     * Search of {@code fen} within {@code limits}, e.g. from a
+     * {@link TimeManager}. Engines without their own clock only use the depth.
+     */
+    default AnalysisResult analyse(String fen, SearchLimits limits) {
+        return analyse(fen, limits.getDepth());
+    }
+
+    /** Move to play in {@code fen} within {@code limits}, or null. */
+    default String getBestMove(String fen, SearchLimits limits) {
+        AnalysisResult result = analyse(fen, limits);
+        return result != null ? result.getBestMove() : null;
+    }
+
+    /**
+     * Analyses {@code fen} deeper and deeper, reporting every finished depth
+     * to {@code listener}, until {@link #cancel()} is called, the calling
+     * thread is interrupted or the engine cannot go any deeper. Blocks until
+     * then.
+     *
+     * <p>The default runs {@link #analyse} for increasing depths.
+     */
+    default void analyseInfinite(String fen, AnalysisListener listener) {
+        for (int depth = 1; depth < Search.MAX_PLY; depth++) {
+            if (Thread.currentThread().isInterrupted()) return;
+            AnalysisResult info = analyse(fen, depth);
+            if (info == null) return;
+            listener.onInfo(info);
+            if (info.getMate() != 0) return;
+        }
+    }
+}
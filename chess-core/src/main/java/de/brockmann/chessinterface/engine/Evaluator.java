@@ -0,0 +1,140 @@
+package de.brockmann.chessinterface.engine;
+
+import de.brockmann.chessinterface.core.Piece;
+import de.brockmann.chessinterface.core.Position;
+
+/**
+ * Static evaluation: material plus piece-square tables, tapered between
+ * middlegame and endgame by the remaining non-pawn material. The tables
+ * are written from White's point of view with a8 first, which matches the
+ * square numbering; Black uses the vertically mirrored square.
+ */
+public final class Evaluator {
+
+    /** Material values indexed by piece type. */
+    public static final int[] VALUE = {100, 320, 330, 500, 900, 0};
+
+    private static final int[] PHASE_WEIGHT = {0, 1, 1, 2, 4, 0};
+    private static final int MAX_PHASE = 24;
+    private static final int BISHOP_PAIR = 30;
+
+    private static final int[] PAWN = {
+             0,  0,  0,  0,  0,  0,  0,  0,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            10, 10, 20, 30, 30, 20, 10, 10,
+             5,  5, 10, 25, 25, 10,  5,  5,
+             0,  0,  0, 20, 20,  0,  0,  0,
+             5, -5,-10,  0,  0,-10, -5,  5,
+             5, 10, 10,-20,-20, 10, 10,  5,
+             0,  0,  0,  0,  0,  0,  0,  0
+    };
+    private static final int[] PAWN_END = {
+             0,  0,  0,  0,  0,  0,  0,  0,
+            80, 80, 80, 80, 80, 80, 80, 80,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            30, 30, 30, 30, 30, 30, 30, 30,
+            20, 20, 20, 20, 20, 20, 20, 20,
+            10, 10, 10, 10, 10, 10, 10, 10,
+             5,  5,  5,  5,  5,  5,  5,  5,
+             0,  0,  0,  0,  0,  0,  0,  0
+    };
+    private static final int[] KNIGHT = {
+            -50,-40,-30,-30,-30,-30,-40,-50,
+            -40,-20,  0,  0,  0,  0,-20,-40,
+            -30,  0, 10, 15, 15, 10,  0,-30,
+            -30,  5, 15, 20, 20, 15,  5,-30,
+            -30,  0, 15, 20, 20, 15,  0,-30,
+            -30,  5, 10, 15, 15, 10,  5,-30,
+            -40,-20,  0,  5,  5,  0,-20,-40,
+            -50,-40,-30,-30,-30,-30,-40,-50
+    };
+    private static final int[] BISHOP = {
+            -20,-10,-10,-10,-10,-10,-10,-20,
+            -10,  0,  0,  0,  0,  0,  0,-10,
+            -10,  0,  5, 10, 10,  5,  0,-10,
+            -10,  5,  5, 10, 10,  5,  5,-10,
+            -10,  0, 10, 10, 10, 10,  0,-10,
+            -10, 10, 10, 10, 10, 10, 10,-10,
+            -10,  5,  0,  0,  0,  0,  5,-10,
+            -20,-10,-10,-10,-10,-10,-10,-20
+    };
+    private static final int[] ROOK = {
+              0,  0,  0,  0,  0,  0,  0,  0,
+              5, 10, 10, 10, 10, 10, 10,  5,
+             -5,  0,  0,  0,  0,  0,  0, -5,
+             -5,  0,  0,  0,  0,  0,  0, -5,
+             -5,  0,  0,  0,  0,  0,  0, -5,
+             -5,  0,  0,  0,  0,  0,  0, -5,
+             -5,  0,  0,  0,  0,  0,  0, -5,
+              0,  0,  0,  5,  5,  0,  0,  0
+    };
+    private static final int[] QUEEN = {
+            -20,-10,-10, -5, -5,-10,-10,-20,
+            -10,  0,  0,  0,  0,  0,  0,-10,
+            -10,  0,  5,  5,  5,  5,  0,-10,
+             -5,  0,  5,  5,  5,  5,  0, -5,
+              0,  0,  5,  5,  5,  5,  0, -5,
+            -10,  5,  5,  5,  5,  5,  0,-10,
+            -10,  0,  5,  0,  0,  0,  0,-10,
+            -20,-10,-10, -5, -5,-10,-10,-20
+    };
+    private static final int[] KING = {
+            -30,-40,-40,-50,-50,-40,-40,-30,
+            -30,-40,-40,-50,-50,-40,-40,-30,
+            -30,-40,-40,-50,-50,-40,-40,-30,
+            -30,-40,-40,-50,-50,-40,-40,-30,
+            -20,-30,-30,-40,-40,-30,-30,-20,
+            -10,-20,-20,-20,-20,-20,-20,-10,
+             20, 20,  0,  0,  0,  0, 20, 20,
+             20, 30, 10,  0,  0, 10, 30, 20
+    };
+    private static final int[] KING_END = {
+            -50,-40,-30,-20,-20,-30,-40,-50,
+            -30,-20,-10,  0,  0,-10,-20,-30,
+            -30,-10, 20, 30, 30, 20,-10,-30,
+            -30,-10, 30, 40, 40, 30,-10,-30,
+            -30,-10, 30, 40, 40, 30,-10,-30,
+            -30,-10, 20, 30, 30, 20,-10,-30,
+            -30,-30,  0,  0,  0,  0,-30,-30,
+            -50,-30,-30,-30,-30,-30,-30,-50
+    };
+
+    private static final int[][] MIDDLEGAME = {PAWN, KNIGHT, BISHOP, ROOK, QUEEN, KING};
+    private static final int[][] ENDGAME = {PAWN_END, KNIGHT, BISHOP, ROOK, QUEEN, KING_END};
+
+    private Evaluator() {}
+
+    /** Score of {@code pos} in centipawns from the side to move's point of view. */
+    public static int evaluate(Position pos) {
+        int mg = 0;
+        int eg = 0;
+        int phase = 0;
+        for (int piece = 0; piece < 12; piece++) {
+            int type = Piece.type(piece);
+            boolean white = Piece.color(piece) == Piece.WHITE;
+            int sign = white ? 1 : -1;
+            long bb = pos.pieces(piece);
+            while (bb != 0) {
+                int sq = Long.numberOfTrailingZeros(bb);
+                bb &= bb - 1;
+                int idx = white ? sq : sq ^ 56;
+                mg += sign * (VALUE[type] + MIDDLEGAME[type][idx]);
+                eg += sign * (VALUE[type] + ENDGAME[type][idx]);
+                phase += PHASE_WEIGHT[type];
+            }
+        }
+        if (Long.bitCount(pos.pieces(Piece.W_BISHOP)) >= 2) { mg += BISHOP_PAIR; eg += BISHOP_PAIR; }
+        if (Long.bitCount(pos.pieces(Piece.B_BISHOP)) >= 2) { mg -= BISHOP_PAIR; eg -= BISHOP_PAIR; }
+
+        phase = Math.min(phase, MAX_PHASE);
+        int score = (mg * phase + eg * (MAX_PHASE - phase)) / MAX_PHASE;
+        return pos.whiteToMove() ? score : -score;
+    }
+
+    /** Whether the side to move has anything besides king and pawns. */
+    static boolean hasNonPawnMaterial(Position pos) {
+        int off = pos.sideToMove() * 6;
+        return (pos.pieces(off + Piece.KNIGHT) | pos.pieces(off + Piece.BISHOP)
+                | pos.pieces(off + Piece.ROOK) | pos.pieces(off + Piece.QUEEN)) != 0;
+    }
+}
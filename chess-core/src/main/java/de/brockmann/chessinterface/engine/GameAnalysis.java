@@ -0,0 +1,151 @@
+package de.brockmann.chessinterface.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Analyses every position of a game in the background on a bounded number
+ * of workers. Positions closest to the focus index (usually the one on the
+ * board) are analysed first; {@link #setFocus} may move it at any time.
+ * Results are streamed to a {@link Listener} as they finish, from worker
+ * threads.
+ *
+ * <p>Wrap the engine in a {@link CachingEngine} so that positions already
+ * analysed while navigating are not searched again, and the other way round.
+ */
+public class GameAnalysis {
+
+    /** Loss in centipawns from the mover's point of view that counts as a blunder. */
+    public static final int BLUNDER_THRESHOLD = 200;
+    /** Scores beyond this are drawn and compared as this value. */
+    public static final int SCORE_CLAMP = 1000;
+
+    public interface Listener {
+        /** Result for position {@code index}; may be null if the engine gave none. */
+        void onResult(int index, AnalysisResult result);
+
+        /** Every position has been analysed. */
+        void onFinished();
+    }
+
+    private final ChessEngine engine;
+    private final int workers;
+    private final int depth;
+    private final List<String> fens = new ArrayList<>();
+    private boolean[] pending = new boolean[0];
+    private int remaining;
+    private int focus;
+    private int generation;
+    private ExecutorService pool;
+
+    public GameAnalysis(ChessEngine engine, int workers, int depth) {
+        this.engine = engine;
+        this.workers = Math.max(1, workers);
+        this.depth = depth;
+    }
+
+    /** Analyses all {@code fens}, starting around {@code focus}. Cancels a previous run. */
+    public synchronized void start(List<String> fens, int focus, Listener listener) {
+        cancel();
+        this.fens.clear();
+        this.fens.addAll(fens);
+        pending = new boolean[fens.size()];
+        Arrays.fill(pending, true);
+        remaining = fens.size();
+        this.focus = focus;
+        int gen = ++generation;
+        pool = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "game-analysis");
+            t.setDaemon(true);
+            return t;
+        });
+        for (int i = 0; i < workers; i++) {
+            pool.execute(() -> work(gen, listener));
+        }
+        pool.shutdown();
+    }
+
+    public synchronized void setFocus(int focus) {
+        this.focus = focus;
+    }
+
+    public synchronized boolean isRunning() {
+        return remaining > 0 && pool != null;
+    }
+
+    /**
+     * Stops handing out positions. Running searches are interrupted where the
+     * engine allows it; their results are dropped either way.
+     */
+    public synchronized void cancel() {
+        generation++;
+        remaining = 0;
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
+    }
+
+    private void work(int gen, Listener listener) {
+        while (true) {
+            int index;
+            String fen;
+            synchronized (this) {
+                if (gen != generation) return;
+                index = nextIndex();
+                if (index < 0) return;
+                pending[index] = false;
+                fen = fens.get(index);
+            }
+            AnalysisResult result = engine.analyse(fen, depth);
+            boolean finished;
+            synchronized (this) {
+                if (gen != generation) return;
+                finished = --remaining == 0;
+            }
+            listener.onResult(index, result);
+            if (finished) listener.onFinished();
+        }
+    }
+
+    // pending position nearest to the focus, preferring later ones on ties
+    private int nextIndex() {
+        for (int d = 0; d < pending.length; d++) {
+            int after = focus + d;
+            if (after < pending.length && pending[after]) return after;
+            int before = focus - d;
+            if (before >= 0 && pending[before]) return before;
+        }
+        return -1;
+    }
+
+    /**
+     * Score of {@code result} in centipawns from White's point of view,
+     * clamped to {@link #SCORE_CLAMP}; mates count as the clamp value.
+     */
+    public static int whiteScore(String fen, AnalysisResult result) {
+        int score;
+        if (result.getMate() != 0) score = result.getMate() > 0 ? SCORE_CLAMP : -SCORE_CLAMP;
+        else score = Math.max(-SCORE_CLAMP, Math.min(SCORE_CLAMP, result.getScore()));
+        return whiteToMove(fen) ? score : -score;
+    }
+
+    /**
+     * Whether the move leading from {@code before} to {@code after} lost at
+     * least {@link #BLUNDER_THRESHOLD} centipawns for the side that played it.
+     */
+    public static boolean isBlunder(String fenBefore, AnalysisResult before,
+                                    String fenAfter, AnalysisResult after) {
+        if (before == null || after == null) return false;
+        int loss = whiteScore(fenBefore, before) - whiteScore(fenAfter, after);
+        return (whiteToMove(fenBefore) ? loss : -loss) >= BLUNDER_THRESHOLD;
+    }
+
+    private static boolean whiteToMove(String fen) {
+        int space = fen.indexOf(' ');
+        return space < 0 || space + 1 >= fen.length() || fen.charAt(space + 1) != 'b';
+    }
+}
@@ -0,0 +1,281 @@
+package de.brockmann.chessinterface.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.brockmann.chessinterface.core.Position;
+
+/**
+ * On-device engine. Needs no network connection. Every search is
+ * additionally capped at {@link #DEFAULT_MOVE_TIME_MS} so that deep
+ * requests still answer in time. The transposition table is kept between
+ * searches, so consecutive moves of one game reuse earlier work until
+ * {@link #newGame()} is called.
+ *
+ * <p>With more than one thread the search runs Lazy-SMP: the calling thread
+ * runs the main search whose result is returned, while helper threads
+ * search the same position and share the transposition table with it.
+ *
+ * <p>{@link #setElo} weakens the moves it plays through a
+ * {@link StrengthLimit}; weak levels also search less and without helpers.
+ */
+public class LocalEngine implements ChessEngine {
+
+    public static final long DEFAULT_MOVE_TIME_MS = 3000;
+    private static final int DEFAULT_HASH_MB = 16;
+
+    private final TranspositionTable tt;
+    private final Position position = new Position();
+    private volatile Search[] searches;
+    private Position[] helperPositions;
+    private ExecutorService helperPool;
+    private volatile boolean running;
+    // bumped by cancel(); a request started before the bump gives up
+    private final AtomicInteger generation = new AtomicInteger();
+    private long moveTimeMs = DEFAULT_MOVE_TIME_MS;
+    private int multiPv = 1;
+    private volatile StrengthLimit strength;
+    // searches taking part in the current or last search, the main one included
+    private volatile int activeSearches = 1;
+    private final Random random = new Random();
+
+    public LocalEngine() {
+        this(DEFAULT_HASH_MB, 1);
+    }
+
+    public LocalEngine(int hashMb) {
+        this(hashMb, 1);
+    }
+
+    public LocalEngine(int hashMb, int threads) {
+        tt = new TranspositionTable(hashMb);
+        createSearches(threads);
+    }
+
+    /** All available cores, but at most {@code cap}. */
+    public static int defaultThreads(int cap) {
+        return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), cap));
+    }
+
+    private void createSearches(int threads) {
+        threads = Math.max(1, threads);
+        searches = new Search[threads];
+        helperPositions = new Position[threads];
+        for (int i = 0; i < threads; i++) {
+            searches[i] = new Search(tt, i);
+            if (i == 0) searches[i].setMultiPv(multiPv);
+            if (i > 0) helperPositions[i] = new Position();
+        }
+    }
+
+    @Override
+    public synchronized boolean start() {
+        if (helperPool == null && searches.length > 1) {
+            helperPool = Executors.newFixedThreadPool(searches.length - 1, r -> {
+                Thread t = new Thread(r, "engine-helper");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        // built once per process; the search uses them as soon as they are ready
+        Tablebase.generateInBackground();
+        running = true;
+        return true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        for (Search s : searches) s.stop();
+        synchronized (this) {
+            if (helperPool != null) {
+                helperPool.shutdownNow();
+                helperPool = null;
+            }
+        }
+    }
+
+    @Override
+    public void cancel() {
+        generation.incrementAndGet();
+        for (Search s : searches) s.stop();
+    }
+
+    /** Plays at {@code elo}; 0 or {@link StrengthLimit#MAX_ELO} and above play at full strength. */
+    @Override
+    public void setElo(int elo) {
+        strength = StrengthLimit.forElo(elo);
+    }
+
+    @Override
+    public synchronized void setMultiPv(int lines) {
+        multiPv = lines;
+        searches[0].setMultiPv(lines);
+    }
+
+    /** Forgets everything learned from previous searches. */
+    public synchronized void newGame() {
+        tt.clear();
+    }
+
+    /** Changes the number of search threads, the main thread included. */
+    public synchronized void setThreads(int threads) {
+        if (helperPool != null) {
+            helperPool.shutdownNow();
+            helperPool = null;
+        }
+        createSearches(threads);
+        if (running) start();
+    }
+
+    public synchronized int getThreads() {
+        return searches.length;
+    }
+
+    /** Upper bound for the duration of a single search; 0 disables it. */
+    public void setMoveTime(long moveTimeMs) {
+        this.moveTimeMs = moveTimeMs;
+    }
+
+    @Override
+    public String getBestMove(String fen, int depth) {
+        return getBestMove(fen, new SearchLimits(depth, moveTimeMs, 0));
+    }
+
+    /** With a strength limit the move is picked among the best few lines. */
+    @Override
+    public String getBestMove(String fen, SearchLimits limits) {
+        // taken before waiting for another request, so a cancel() meanwhile counts
+        int request = generation.get();
+        synchronized (this) {
+            StrengthLimit s = strength;
+            if (s == null) {
+                AnalysisResult result = analyse(fen, limits, request);
+                return result != null ? result.getBestMove() : null;
+            }
+            searches[0].setMultiPv(s.getCandidates());
+            try {
+                AnalysisResult result = analyse(fen, limits, request);
+                return result != null ? s.pick(result.getLines(), random) : null;
+            } finally {
+                searches[0].setMultiPv(multiPv);
+            }
+        }
+    }
+
+    @Override
+    public AnalysisResult analyse(String fen, int depth) {
+        return analyse(fen, new SearchLimits(depth, moveTimeMs, 0));
+    }
+
+    /**
+     * Returns null if {@link #cancel()} is called before it is done, also
+     * while it still waits for another request to finish.
+     */
+    @Override
+    public AnalysisResult analyse(String fen, SearchLimits limits) {
+        int request = generation.get();
+        synchronized (this) {
+            return analyse(fen, limits, request);
+        }
+    }
+
+    private AnalysisResult analyse(String fen, SearchLimits limits, int request) {
+        if (!running) return null;
+        try {
+            position.loadFromFEN(fen);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        StrengthLimit s = strength;
+        AnalysisResult main = runSearch(s != null ? s.apply(limits) : limits, request);
+        // a cancelled search only got part of the way, nobody wants it
+        if (main == null || generation.get() != request || Thread.currentThread().isInterrupted()) return null;
+        return withThreadNodes(main);
+    }
+
+    /**
+     * Searches until {@link #cancel()}, a forced mate or the maximum depth.
+     * Interrupting the calling thread ends it as well.
+     */
+    @Override
+    public void analyseInfinite(String fen, AnalysisListener listener) {
+        int request = generation.get();
+        synchronized (this) {
+            if (!running) return;
+            try {
+                position.loadFromFEN(fen);
+            } catch (IllegalArgumentException e) {
+                return;
+            }
+            searches[0].setListener(info -> listener.onInfo(withThreadNodes(info)));
+            try {
+                runSearch(new SearchLimits(Search.MAX_PLY, 0, 0), request);
+            } finally {
+                searches[0].setListener(null);
+            }
+        }
+    }
+
+    // main search on this thread, helpers on the pool until the main one returns;
+    // a helper that failed is rethrown once all of them are done
+    private AnalysisResult runSearch(SearchLimits limits, int request) {
+        // stop flags are cleared before the check, so a cancel() right after it still stops them
+        for (Search s : searches) s.prepare();
+        if (generation.get() != request) return null;
+        tt.newSearch();
+        List<Future<?>> helpers = new ArrayList<>(searches.length - 1);
+        StrengthLimit s = strength;
+        if (helperPool != null && (s == null || s.usesHelperThreads())) {
+            for (int i = 1; i < searches.length; i++) {
+                Search helper = searches[i];
+                Position helperPosition = helperPositions[i];
+                helperPosition.copyFrom(position);
+                helpers.add(helperPool.submit(() -> helper.run(helperPosition, limits)));
+            }
+        }
+        activeSearches = helpers.size() + 1;
+
+        AnalysisResult main = searches[0].run(position, limits);
+
+        for (int i = 1; i < searches.length; i++) searches[i].stop();
+        // helpers must be done before their positions are reused, even when interrupted
+        boolean interrupted = false;
+        Throwable failure = null;
+        for (Future<?> f : helpers) {
+            while (true) {
+                try {
+                    f.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (failure == null) failure = e.getCause();
+                    break;
+                }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        if (failure != null) throw new IllegalStateException("helper search failed", failure);
+        return main;
+    }
+
+    // helper counters are read while they run, so this is a close estimate
+    private AnalysisResult withThreadNodes(AnalysisResult main) {
+        long[] threadNodes = new long[activeSearches];
+        threadNodes[0] = main.getNodes();
+        for (int i = 1; i < threadNodes.length; i++) {
+            threadNodes[i] = searches[i].getNodes();
+        }
+        List<AnalysisResult> lines = main.getLines();
+        return new AnalysisResult(main.getBestMove(), main.getScore(), main.getMate(),
+                main.getDepth(), main.getPv(), main.getTimeMs(), threadNodes,
+                lines.size() > 1 ? lines : null);
+    }
+}
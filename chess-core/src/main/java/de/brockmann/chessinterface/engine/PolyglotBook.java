@@ -0,0 +1,193 @@
+package de.brockmann.chessinterface.engine;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+import de.brockmann.chessinterface.core.Move;
+import de.brockmann.chessinterface.core.MoveGenerator;
+import de.brockmann.chessinterface.core.Piece;
+import de.brockmann.chessinterface.core.Position;
+import de.brockmann.chessinterface.core.Square;
+
+/**
+ * Opening book in the Polyglot {@code .bin} format: 16-byte big-endian
+ * entries (key, move, weight, learn) sorted by key. The file is memory
+ * mapped rather than read, so opening it costs nothing and a lookup touches
+ * only the pages of a binary search.
+ *
+ * <p>Polyglot keys are Zobrist hashes over a fixed table of 781 random
+ * numbers that is part of the format; it is passed in, see
+ * {@link #readKeys}. Polyglot counts squares from a1, this package from a8.
+ */
+public class PolyglotBook {
+
+    public static final int ENTRY_BYTES = 16;
+    public static final int KEY_COUNT = 781;
+
+    private static final int CASTLE_OFFSET = 768;
+    private static final int EP_OFFSET = 772;
+    private static final int TURN_OFFSET = 780;
+    private static final int MAX_CANDIDATES = 64;
+
+    private final ByteBuffer entries;
+    private final int count;
+    private final long[] random64;
+    private final Random random = new Random();
+
+    /** @param random64 the {@value #KEY_COUNT} Polyglot random numbers */
+    public PolyglotBook(ByteBuffer entries, long[] random64) {
+        if (random64.length != KEY_COUNT) {
+            throw new IllegalArgumentException("expected " + KEY_COUNT + " keys");
+        }
+        this.entries = entries.duplicate().order(ByteOrder.BIG_ENDIAN);
+        this.count = entries.remaining() / ENTRY_BYTES;
+        this.random64 = random64;
+    }
+
+    /**
+     * Maps {@code length} bytes at {@code offset} of {@code channel}, e.g. an
+     * uncompressed asset inside an APK. The mapping outlives the channel.
+     */
+    public static PolyglotBook open(FileChannel channel, long offset, long length,
+                                    long[] random64) throws IOException {
+        return new PolyglotBook(channel.map(FileChannel.MapMode.READ_ONLY, offset, length), random64);
+    }
+
+    /** Reads the Polyglot random numbers stored as {@value #KEY_COUNT} big-endian longs. */
+    public static long[] readKeys(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        long[] keys = new long[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) keys[i] = data.readLong();
+        return keys;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /** A book move for {@code fen} in UCI notation, or null if out of book. */
+    public String getMove(String fen) {
+        synchronized (random) {
+            return getMove(fen, random);
+        }
+    }
+
+    /**
+     * Picks one of the book moves for {@code fen} with probability
+     * proportional to its weight. Moves that are not legal here, e.g. from
+     * a key collision, are skipped.
+     */
+    public String getMove(String fen, Random random) {
+        Position pos = new Position(fen);
+        long key = key(pos);
+        int[] legal = new int[256];
+        int legalCount = MoveGenerator.generateLegalMoves(pos, legal);
+
+        String[] candidates = new String[MAX_CANDIDATES];
+        int[] weights = new int[MAX_CANDIDATES];
+        int n = 0;
+        long total = 0;
+        for (int i = lowerBound(key); i < count && n < MAX_CANDIDATES && keyAt(i) == key; i++) {
+            int weight = entries.getShort(i * ENTRY_BYTES + 10) & 0xFFFF;
+            if (weight == 0) continue;
+            String move = toUci(pos, entries.getShort(i * ENTRY_BYTES + 8) & 0xFFFF);
+            if (!isLegal(move, legal, legalCount)) continue;
+            candidates[n] = move;
+            weights[n++] = weight;
+            total += weight;
+        }
+        if (n == 0) return null;
+        long pick = (long) (random.nextDouble() * total);
+        for (int i = 0; i < n; i++) {
+            pick -= weights[i];
+            if (pick < 0) return candidates[i];
+        }
+        return candidates[n - 1];
+    }
+
+    private long keyAt(int index) {
+        return entries.getLong(index * ENTRY_BYTES);
+    }
+
+    // first entry whose key is not below key, comparing unsigned like the file is sorted
+    private int lowerBound(long key) {
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Long.compareUnsigned(keyAt(mid), key) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /** Polyglot key of {@code pos}. */
+    public long key(Position pos) {
+        long key = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            int piece = pos.pieceAt(sq);
+            if (piece == Piece.NONE) continue;
+            // black pawn, white pawn, black knight, ...
+            int kind = 2 * Piece.type(piece) + (Piece.color(piece) == Piece.WHITE ? 1 : 0);
+            key ^= random64[64 * kind + polyglotSquare(sq)];
+        }
+        int castling = pos.castlingRights();
+        if ((castling & Position.CASTLE_WHITE_KINGSIDE) != 0) key ^= random64[CASTLE_OFFSET];
+        if ((castling & Position.CASTLE_WHITE_QUEENSIDE) != 0) key ^= random64[CASTLE_OFFSET + 1];
+        if ((castling & Position.CASTLE_BLACK_KINGSIDE) != 0) key ^= random64[CASTLE_OFFSET + 2];
+        if ((castling & Position.CASTLE_BLACK_QUEENSIDE) != 0) key ^= random64[CASTLE_OFFSET + 3];
+        int ep = pos.epSquare();
+        if (ep != Square.NONE && canCaptureEnPassant(pos, ep)) key ^= random64[EP_OFFSET + Square.col(ep)];
+        if (pos.whiteToMove()) key ^= random64[TURN_OFFSET];
+        return key;
+    }
+
+    // Polyglot only hashes the en passant file if a pawn could actually take
+    private static boolean canCaptureEnPassant(Position pos, int ep) {
+        int pawn = pos.whiteToMove() ? Piece.W_PAWN : Piece.B_PAWN;
+        // the capturing pawn stands one row behind the target square
+        int row = Square.row(ep) + (pos.whiteToMove() ? 1 : -1);
+        int col = Square.col(ep);
+        if (row < 0 || row > 7) return false;
+        return (col > 0 && pos.pieceAt(Square.of(row, col - 1)) == pawn)
+                || (col < 7 && pos.pieceAt(Square.of(row, col + 1)) == pawn);
+    }
+
+    private static int polyglotSquare(int sq) {
+        return (7 - Square.row(sq)) * 8 + Square.col(sq);
+    }
+
+    private static int fromPolyglot(int file, int rank) {
+        return Square.of(7 - rank, file);
+    }
+
+    // to file, to rank, from file, from rank, promotion; castling is king takes rook
+    static String toUci(Position pos, int move) {
+        int to = fromPolyglot(move & 7, (move >>> 3) & 7);
+        int from = fromPolyglot((move >>> 6) & 7, (move >>> 9) & 7);
+        int promotion = (move >>> 12) & 7;
+        int piece = pos.pieceAt(from);
+        if (piece != Piece.NONE && Piece.type(piece) == Piece.KING && Square.col(from) == 4) {
+            int rook = pos.pieceAt(to);
+            if (rook != Piece.NONE && Piece.type(rook) == Piece.ROOK
+                    && Piece.color(rook) == Piece.color(piece)) {
+                to = Square.col(to) == 7 ? from + 2 : from - 2;
+            }
+        }
+        String uci = Square.toAlgebraic(from) + Square.toAlgebraic(to);
+        if (promotion > 0) uci += " nbrq".charAt(promotion);
+        return uci;
+    }
+
+    private static boolean isLegal(String uci, int[] legal, int count) {
+        for (int i = 0; i < count; i++) {
+            if (Move.toUci(legal[i]).equals(uci)) return true;
+        }
+        return false;
+    }
+}
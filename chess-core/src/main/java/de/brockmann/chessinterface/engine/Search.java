@@ -0,0 +1,418 @@
+package de.brockmann.chessinterface.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.brockmann.chessinterface.core.Move;
+import de.brockmann.chessinterface.core.MoveGenerator;
+import de.brockmann.chessinterface.core.Piece;
+import de.brockmann.chessinterface.core.Position;
+
+/**
+ * Iterative deepening alpha-beta search (principal variation search) with
+ * quiescence, transposition table, null-move pruning, late move reductions
+ * and killer/history move ordering. One instance searches one position at
+ * a time; {@link #stop()} may be called from any thread.
+ *
+ * <p>Several instances sharing one {@link TranspositionTable} form a
+ * Lazy-SMP search: helpers with {@code id > 0} run the same search on
+ * their own copy of the position, odd ones one ply deeper, and mostly
+ * contribute through the entries they leave in the table.
+ *
+ * <p>With MultiPV each iteration searches the root several times, each time
+ * excluding the best moves found so far, which yields the top lines in
+ * order.
+ */
+public final class Search {
+
+    public static final int MAX_PLY = 100;
+    public static final int MAX_MULTI_PV = 8;
+    static final int INFINITY = 32000;
+    static final int MATE = 31000;
+    static final int MATE_BOUND = MATE - MAX_PLY;
+    // tablebase wins without a distance to mate, below every mate score
+    static final int KNOWN_WIN = 20000;
+    // share of the soft time limit, in percent, by how many iterations in a row kept the best move
+    private static final int[] STABILITY_PERCENT = {150, 100, 75, 50};
+
+    private static final int SCORE_TT_MOVE = 1 << 30;
+    private static final int SCORE_CAPTURE = 1 << 28;
+    private static final int SCORE_KILLER_1 = 1 << 27;
+    private static final int SCORE_KILLER_2 = SCORE_KILLER_1 - 1;
+
+    private final TranspositionTable tt;
+    private final int id;
+    private final int[][] moves = new int[MAX_PLY + 1][MoveGenerator.MAX_MOVES];
+    private final int[][] orderScores = new int[MAX_PLY + 1][MoveGenerator.MAX_MOVES];
+    private final int[][] killers = new int[MAX_PLY + 1][2];
+    private final int[][] history = new int[12][64];
+    private final int[][] pv = new int[MAX_PLY + 1][MAX_PLY + 1];
+    private final int[] pvLength = new int[MAX_PLY + 1];
+
+    private Position pos;
+    private long nodes;
+    private long nodeLimit;
+    private long deadline;
+    private volatile boolean stopped;
+    private AnalysisListener listener;
+    private int multiPv = 1;
+    private final int[] excludedRoot = new int[MAX_MULTI_PV];
+    private int excludedCount;
+
+    public Search(TranspositionTable tt) {
+        this(tt, 0);
+    }
+
+    Search(TranspositionTable tt, int id) {
+        this.tt = tt;
+        this.id = id;
+    }
+
+    public void stop() {
+        stopped = true;
+    }
+
+    /** Receives a result after every completed iteration; null for none. */
+    public void setListener(AnalysisListener listener) {
+        this.listener = listener;
+    }
+
+    /** Number of best lines to search, 1 to {@link #MAX_MULTI_PV}. */
+    public void setMultiPv(int lines) {
+        multiPv = Math.max(1, Math.min(lines, MAX_MULTI_PV));
+    }
+
+    /** Nodes visited by the current or last search. */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Searches {@code root} within {@code limits}. The position is restored
+     * before returning. Returns null if the side to move has no legal move.
+     */
+    public AnalysisResult search(Position root, SearchLimits limits) {
+        stopped = false;
+        if (id == 0) tt.newSearch();
+        return run(root, limits);
+    }
+
+    /**
+     * Clears the stop flag before a helper is handed to another thread, so
+     * that a {@link #stop()} arriving before {@link #run} starts is not lost.
+     */
+    void prepare() {
+        stopped = false;
+    }
+
+    /** Like {@link #search} but keeps the stop flag and the table age. */
+    AnalysisResult run(Position root, SearchLimits limits) {
+        pos = root;
+        nodes = 0;
+        nodeLimit = limits.nodes;
+        long start = System.nanoTime();
+        deadline = limits.timeMs > 0 ? start + limits.timeMs * 1_000_000L : Long.MAX_VALUE;
+        for (int[] k : killers) { k[0] = Move.NONE; k[1] = Move.NONE; }
+        for (int[] h : history) java.util.Arrays.fill(h, 0);
+
+        int rootCount = MoveGenerator.generateLegalMoves(root, moves[0]);
+        if (rootCount == 0) return null;
+
+        int lineCount = id > 0 ? 1 : Math.min(multiPv, rootCount);
+        List<AnalysisResult> bestLines = new ArrayList<>();
+        bestLines.add(result(moves[0][0], 0, 0, new ArrayList<>(), start));
+        int completedDepth = 0;
+        int stableIterations = 0;
+        for (int depth = 1; depth <= limits.depth; depth++) {
+            List<AnalysisResult> lines = new ArrayList<>(lineCount);
+            excludedCount = 0;
+            for (int k = 0; k < lineCount; k++) {
+                int score = negamax(id > 0 ? depth + (id & 1) : depth, -INFINITY, INFINITY, 0, true);
+                // a cut-off first line is only better than nothing at all
+                if (stopped && (k > 0 || completedDepth > 0)) break;
+                if (pvLength[0] == 0) break;
+                lines.add(result(pv[0][0], score, depth, extractPv(), start));
+                excludedRoot[excludedCount++] = pv[0][0];
+                if (stopped) break;
+            }
+            excludedCount = 0;
+            if (lines.isEmpty()) break;
+            // reductions differ between the passes, so later lines can come out higher
+            lines.sort((a, b) -> Integer.compare(b.getScore(), a.getScore()));
+            boolean sameBest = lines.get(0).getBestMove().equals(bestLines.get(0).getBestMove());
+            stableIterations = completedDepth > 0 && sameBest ? stableIterations + 1 : 0;
+            bestLines = lines;
+            completedDepth = depth;
+            if (listener != null && !stopped) listener.onInfo(combine(bestLines, start));
+            if (stopped || Math.abs(lines.get(0).getScore()) >= MATE_BOUND) break;
+            if (softLimitReached(limits, start, stableIterations)) break;
+        }
+
+        return combine(bestLines, start);
+    }
+
+    // past the soft limit, stretched while the best move changes and shortened while it holds
+    private boolean softLimitReached(SearchLimits limits, long start, int stableIterations) {
+        if (id > 0 || limits.softTimeMs <= 0) return false;
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000L;
+        int percent = STABILITY_PERCENT[Math.min(stableIterations, STABILITY_PERCENT.length - 1)];
+        return elapsedMs * 100 >= limits.softTimeMs * percent;
+    }
+
+    private AnalysisResult result(int move, int score, int depth, List<String> line, long start) {
+        long timeMs = (System.nanoTime() - start) / 1_000_000L;
+        int mate = 0;
+        if (score >= MATE_BOUND) mate = (MATE - score + 1) / 2;
+        else if (score <= -MATE_BOUND) mate = -(MATE + score) / 2;
+        return new AnalysisResult(Move.toUci(move), score, mate, depth, line, nodes, timeMs);
+    }
+
+    // the best line, carrying all lines and the current node count
+    private AnalysisResult combine(List<AnalysisResult> lines, long start) {
+        AnalysisResult best = lines.get(0);
+        long timeMs = (System.nanoTime() - start) / 1_000_000L;
+        return new AnalysisResult(best.getBestMove(), best.getScore(), best.getMate(),
+                best.getDepth(), best.getPv(), timeMs, new long[] {nodes},
+                lines.size() > 1 ? lines : null);
+    }
+
+    // exact mate scores for KQK and KRK; KPK wins keep the evaluation so the pawn moves on
+    private int tablebaseScore(int wdl, int ply) {
+        if (wdl == Tablebase.DRAW) return 0;
+        int distance = Tablebase.mateDistance(pos);
+        if (distance >= 0) return wdl == Tablebase.WIN ? MATE - ply - distance : -MATE + ply + distance;
+        int eval = Evaluator.evaluate(pos);
+        return wdl == Tablebase.WIN ? KNOWN_WIN + eval : -KNOWN_WIN + eval;
+    }
+
+    private boolean isExcludedAtRoot(int move) {
+        for (int i = 0; i < excludedCount; i++) {
+            if (excludedRoot[i] == move) return true;
+        }
+        return false;
+    }
+
+    private List<String> extractPv() {
+        List<String> line = new ArrayList<>(pvLength[0]);
+        for (int i = 0; i < pvLength[0]; i++) line.add(Move.toUci(pv[0][i]));
+        return line;
+    }
+
+    // an interrupt is never lost, unlike a stop() that arrives before search() starts
+    private boolean checkStop() {
+        if ((nodes & 2047) == 0) {
+            if (System.nanoTime() > deadline || Thread.currentThread().isInterrupted()) stopped = true;
+        }
+        if (nodeLimit > 0 && nodes >= nodeLimit) stopped = true;
+        return stopped;
+    }
+
+    private int negamax(int depth, int alpha, int beta, int ply, boolean allowNull) {
+        pvLength[ply] = 0;
+        boolean root = ply == 0;
+        boolean pvNode = beta - alpha > 1;
+
+        if (!root) {
+            if (pos.halfmoveClock() >= 100 || pos.isRepetition()) return 0;
+            // mate distance pruning
+            alpha = Math.max(alpha, -MATE + ply);
+            beta = Math.min(beta, MATE - ply - 1);
+            if (alpha >= beta) return alpha;
+            if (Long.bitCount(pos.occupied()) <= Tablebase.MAX_PIECES) {
+                int wdl = Tablebase.probeWdl(pos);
+                if (wdl != Tablebase.UNKNOWN) return tablebaseScore(wdl, ply);
+            }
+        }
+        if (ply >= MAX_PLY) return Evaluator.evaluate(pos);
+
+        boolean inCheck = pos.isInCheck();
+        if (inCheck) depth++;
+        if (depth <= 0) return quiesce(alpha, beta, ply);
+
+        nodes++;
+        if (checkStop()) return 0;
+
+        long key = pos.hash();
+        long entry = tt.probe(key);
+        int ttMove = Move.NONE;
+        if (entry != 0) {
+            ttMove = TranspositionTable.move(entry);
+            if (!pvNode && TranspositionTable.depth(entry) >= depth) {
+                int score = fromTt(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.BOUND_EXACT
+                        || (bound == TranspositionTable.BOUND_LOWER && score >= beta)
+                        || (bound == TranspositionTable.BOUND_UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        if (!pvNode && !inCheck && allowNull && depth >= 3 && Evaluator.hasNonPawnMaterial(pos)
+                && Evaluator.evaluate(pos) >= beta) {
+            int reduction = 2 + depth / 4;
+            pos.makeNullMove();
+            int score = -negamax(depth - 1 - reduction, -beta, -beta + 1, ply + 1, false);
+            pos.unmakeNullMove();
+            if (stopped) return 0;
+            if (score >= beta) return score >= MATE_BOUND ? beta : score;
+        }
+
+        int[] list = moves[ply];
+        int count = MoveGenerator.generateLegalMoves(pos, list);
+        if (count == 0) return inCheck ? -MATE + ply : 0;
+        scoreMoves(list, orderScores[ply], count, ttMove, ply);
+
+        int bestScore = -INFINITY;
+        int bestMove = Move.NONE;
+        int originalAlpha = alpha;
+        int searched = 0;
+        for (int i = 0; i < count; i++) {
+            int move = pickNext(list, orderScores[ply], i, count);
+            if (root && excludedCount > 0 && isExcludedAtRoot(move)) continue;
+            boolean quiet = isQuiet(move);
+            int piece = pos.pieceAt(Move.from(move));
+
+            pos.makeMove(move);
+            int score;
+            if (searched++ == 0) {
+                score = -negamax(depth - 1, -beta, -alpha, ply + 1, true);
+            } else {
+                int reduction = 0;
+                if (depth >= 3 && i >= 3 && quiet && !inCheck && !pos.isInCheck()) {
+                    reduction = i >= 8 ? 2 : 1;
+                }
+                score = -negamax(depth - 1 - reduction, -alpha - 1, -alpha, ply + 1, true);
+                if (score > alpha && (reduction > 0 || score < beta)) {
+                    score = -negamax(depth - 1, -beta, -alpha, ply + 1, true);
+                }
+            }
+            pos.unmakeMove();
+            if (stopped) return 0;
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    updatePv(ply, move);
+                    if (score >= beta) {
+                        if (quiet) {
+                            if (killers[ply][0] != move) {
+                                killers[ply][1] = killers[ply][0];
+                                killers[ply][0] = move;
+                            }
+                            history[piece][Move.to(move)] += depth * depth;
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        // with root moves excluded this is not the position's real score
+        if (root && excludedCount > 0) return bestScore;
+        int bound = bestScore >= beta ? TranspositionTable.BOUND_LOWER
+                : bestScore > originalAlpha ? TranspositionTable.BOUND_EXACT
+                : TranspositionTable.BOUND_UPPER;
+        tt.store(key, bestMove, toTt(bestScore, ply), depth, bound);
+        return bestScore;
+    }
+
+    private int quiesce(int alpha, int beta, int ply) {
+        pvLength[ply] = 0;
+        nodes++;
+        if (checkStop()) return 0;
+        if (ply >= MAX_PLY) return Evaluator.evaluate(pos);
+
+        boolean inCheck = pos.isInCheck();
+        int[] list = moves[ply];
+        int count;
+        if (inCheck) {
+            // no stand pat while in check, every evasion is searched
+            count = MoveGenerator.generateLegalMoves(pos, list);
+            if (count == 0) return -MATE + ply;
+        } else {
+            int standPat = Evaluator.evaluate(pos);
+            if (standPat >= beta) return standPat;
+            if (standPat > alpha) alpha = standPat;
+            count = MoveGenerator.generateCaptures(pos, list);
+        }
+        scoreMoves(list, orderScores[ply], count, Move.NONE, ply);
+
+        for (int i = 0; i < count; i++) {
+            int move = pickNext(list, orderScores[ply], i, count);
+            pos.makeMove(move);
+            int score = -quiesce(-beta, -alpha, ply + 1);
+            pos.unmakeMove();
+            if (stopped) return 0;
+            if (score > alpha) {
+                alpha = score;
+                updatePv(ply, move);
+                if (score >= beta) break;
+            }
+        }
+        return alpha;
+    }
+
+    private void updatePv(int ply, int move) {
+        pv[ply][0] = move;
+        System.arraycopy(pv[ply + 1], 0, pv[ply], 1, pvLength[ply + 1]);
+        pvLength[ply] = pvLength[ply + 1] + 1;
+    }
+
+    private boolean isQuiet(int move) {
+        return pos.pieceAt(Move.to(move)) == Piece.NONE
+                && Move.flag(move) != Move.FLAG_EN_PASSANT
+                && Move.promotion(move) == 0;
+    }
+
+    // MVV-LVA for captures, then killers, then history
+    private void scoreMoves(int[] list, int[] scores, int count, int ttMove, int ply) {
+        for (int i = 0; i < count; i++) {
+            int move = list[i];
+            int victim = pos.pieceAt(Move.to(move));
+            int attacker = Piece.type(pos.pieceAt(Move.from(move)));
+            if (move == ttMove) {
+                scores[i] = SCORE_TT_MOVE;
+            } else if (victim != Piece.NONE || Move.flag(move) == Move.FLAG_EN_PASSANT) {
+                int value = victim == Piece.NONE ? Evaluator.VALUE[Piece.PAWN] : Evaluator.VALUE[Piece.type(victim)];
+                scores[i] = SCORE_CAPTURE + value * 8 - attacker;
+            } else if (Move.promotion(move) != 0) {
+                scores[i] = SCORE_CAPTURE + Evaluator.VALUE[Move.promotion(move)];
+            } else if (move == killers[ply][0]) {
+                scores[i] = SCORE_KILLER_1;
+            } else if (move == killers[ply][1]) {
+                scores[i] = SCORE_KILLER_2;
+            } else {
+                scores[i] = history[pos.pieceAt(Move.from(move))][Move.to(move)];
+            }
+        }
+    }
+
+    // selection sort step: moves the best remaining move to index i
+    private static int pickNext(int[] list, int[] scores, int i, int count) {
+        int best = i;
+        for (int j = i + 1; j < count; j++) {
+            if (scores[j] > scores[best]) best = j;
+        }
+        if (best != i) {
+            int m = list[i]; list[i] = list[best]; list[best] = m;
+            int s = scores[i]; scores[i] = scores[best]; scores[best] = s;
+        }
+        return list[i];
+    }
+
+    // mate scores are stored relative to the node, not the root
+    private static int toTt(int score, int ply) {
+        if (score >= MATE_BOUND) return score + ply;
+        if (score <= -MATE_BOUND) return score - ply;
+        return score;
+    }
+
+    private static int fromTt(int score, int ply) {
+        if (score >= MATE_BOUND) return score - ply;
+        if (score <= -MATE_BOUND) return score + ply;
+        return score;
+    }
+}
@@ -0,0 +1,48 @@
+package de.brockmann.chessinterface.engine;
+
+/**
+ * Bounds for a single search. A value of 0 means "no limit" for time and
+ * nodes; the depth is always bounded by {@link Search#MAX_PLY}.
+ *
+ * <p>The hard time limit stops the search wherever it is. After the soft one
+ * no new iteration is started; the search stretches or shortens it by how
+ * stable its best move is. {@link TimeManager} derives both from a budget.
+ */
+public final class SearchLimits {
+
+    final int depth;
+    final long softTimeMs;
+    final long timeMs;
+    final long nodes;
+
+    public SearchLimits(int depth, long timeMs, long nodes) {
+        this(depth, 0, timeMs, nodes);
+    }
+
+    public SearchLimits(int depth, long softTimeMs, long timeMs, long nodes) {
+        this.depth = Math.max(1, Math.min(depth, Search.MAX_PLY - 1));
+        this.softTimeMs = softTimeMs;
+        this.timeMs = timeMs;
+        this.nodes = nodes;
+    }
+
+    public static SearchLimits depth(int depth) {
+        return new SearchLimits(depth, 0, 0);
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getSoftTimeMs() {
+        return softTimeMs;
+    }
+
+    public long getTimeMs() {
+        return timeMs;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+}
@@ -0,0 +1,112 @@
+package de.brockmann.chessinterface.engine;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Plays at a given Elo rating instead of always playing the best move.
+ * Weaker levels search fewer nodes and plies, so they also cost less CPU,
+ * and pick among the best few lines by score with a noise that shrinks as
+ * the rating rises. The numbers are rough estimates for {@link #MIN_ELO}
+ * to {@link #MAX_ELO}; from {@link #MAX_ELO} on nothing is limited.
+ */
+public final class StrengthLimit {
+
+    public static final int MIN_ELO = 800;
+    public static final int MAX_ELO = 2800;
+    // lines a noisy pick chooses from
+    static final int CANDIDATES = 4;
+    // noise at MIN_ELO in centipawns, down to 0 at MAX_ELO
+    private static final int MAX_NOISE_CP = 200;
+    // mates count as this many centipawns, other scores are clamped to half of it
+    private static final int MATE_CP = 10000;
+    // helper threads only pay off near full strength
+    private static final int HELPERS_FROM_ELO = 2400;
+
+    private final int elo;
+    private final int depth;
+    private final long nodes;
+    private final int noiseCp;
+
+    private StrengthLimit(int elo, int depth, long nodes, int noiseCp) {
+        this.elo = elo;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.noiseCp = noiseCp;
+    }
+
+    /** Limit for {@code elo}, or null if that is full strength. */
+    public static StrengthLimit forElo(int elo) {
+        if (elo <= 0 || elo >= MAX_ELO) return null;
+        elo = Math.max(elo, MIN_ELO);
+        double t = (elo - MIN_ELO) / (double) (MAX_ELO - MIN_ELO);
+        int depth = 1 + (int) Math.round(t * 11);
+        // 200 nodes at the bottom, doubling about every 170 Elo
+        long nodes = Math.round(200 * Math.pow(2, t * 12));
+        int noise = (int) Math.round(MAX_NOISE_CP * (1 - t));
+        return new StrengthLimit(elo, depth, nodes, noise);
+    }
+
+    public int getElo() {
+        return elo;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public int getNoiseCp() {
+        return noiseCp;
+    }
+
+    /** Number of lines to search so that {@link #pick} has a choice. */
+    public int getCandidates() {
+        return noiseCp > 0 ? CANDIDATES : 1;
+    }
+
+    public boolean usesHelperThreads() {
+        return elo >= HELPERS_FROM_ELO;
+    }
+
+    /** {@code limits} with this level's depth and node caps. */
+    public SearchLimits apply(SearchLimits limits) {
+        long cappedNodes = limits.nodes > 0 ? Math.min(limits.nodes, nodes) : nodes;
+        return new SearchLimits(Math.min(limits.depth, depth), limits.softTimeMs,
+                limits.timeMs, cappedNodes);
+    }
+
+    /**
+     * Move to play from {@code lines}, best first. A line {@code gap}
+     * centipawns worse than the best is chosen with a weight of
+     * {@code exp(-gap / noise)}.
+     */
+    public String pick(List<AnalysisResult> lines, Random random) {
+        if (lines.isEmpty()) return null;
+        if (noiseCp <= 0 || lines.size() == 1) return lines.get(0).getBestMove();
+        int best = value(lines.get(0));
+        double[] weights = new double[lines.size()];
+        double total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            int gap = Math.max(0, best - value(lines.get(i)));
+            weights[i] = Math.exp(-gap / (double) noiseCp);
+            total += weights[i];
+        }
+        double r = random.nextDouble() * total;
+        for (int i = 0; i < weights.length; i++) {
+            r -= weights[i];
+            if (r < 0) return lines.get(i).getBestMove();
+        }
+        return lines.get(0).getBestMove();
+    }
+
+    // a quicker mate is worth a little more, a later one being mated a little less bad
+    private static int value(AnalysisResult line) {
+        if (line.getMate() > 0) return MATE_CP - line.getMate();
+        if (line.getMate() < 0) return -MATE_CP - line.getMate();
+        return Math.max(-MATE_CP / 2, Math.min(MATE_CP / 2, line.getScore()));
+    }
+}
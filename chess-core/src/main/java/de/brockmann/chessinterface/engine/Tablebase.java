@@ -0,0 +1,233 @@
+package de.brockmann.chessinterface.engine;
+
+import de.brockmann.chessinterface.core.Bitboards;
+import de.brockmann.chessinterface.core.GameState;
+import de.brockmann.chessinterface.core.Piece;
+import de.brockmann.chessinterface.core.Position;
+import de.brockmann.chessinterface.core.Square;
+
+/**
+ * Exact results for positions with at most three pieces: KQK and KRK with
+ * the distance to mate, KPK as win or draw, and the bare material draws.
+ *
+ * <p>The tables are built by retrograde analysis, about 1.1 MB in total and
+ * a second or so of work, so they are made once per process on a
+ * background thread (see {@link #generateInBackground}) rather than
+ * shipped. Until they are ready only the material draws are known.
+ *
+ * <p>Positions are stored from the strong side's point of view, with the
+ * board mirrored if that side is Black. Index bits: side to move (0 for
+ * the strong side), strong king, weak king, piece.
+ */
+public final class Tablebase {
+
+    public static final int MAX_PIECES = 3;
+
+    public static final int LOSS = -1;
+    public static final int DRAW = 0;
+    public static final int WIN = 1;
+    public static final int UNKNOWN = 2;
+
+    private static final int SIZE = 2 * 64 * 64 * 64;
+    private static final int WEAK_TO_MOVE = 64 * 64 * 64;
+
+    // plies to mate + 1 from the side to move, 0 for draws and illegal positions
+    private static volatile byte[] kqk;
+    private static volatile byte[] krk;
+    // one bit per index: the strong side wins; assigned last, so it marks readiness
+    private static volatile long[] kpk;
+    private static Thread generator;
+
+    private Tablebase() {}
+
+    public static boolean isReady() {
+        return kpk != null;
+    }
+
+    /** Starts building the tables on a low-priority daemon thread, once. */
+    public static synchronized void generateInBackground() {
+        if (isReady() || generator != null) return;
+        generator = new Thread(Tablebase::generate, "tablebase");
+        generator.setDaemon(true);
+        generator.setPriority(Thread.MIN_PRIORITY);
+        generator.start();
+    }
+
+    /** Builds the tables on the calling thread unless they exist already. */
+    public static synchronized void generate() {
+        if (isReady()) return;
+        kqk = solve(Piece.QUEEN);
+        krk = solve(Piece.ROOK);
+        byte[] pawn = solve(Piece.PAWN);
+        long[] bits = new long[SIZE / 64];
+        for (int i = 0; i < SIZE; i++) {
+            if (pawn[i] != 0) bits[i >>> 6] |= 1L << i;
+        }
+        kpk = bits;
+    }
+
+    /** Outcome for the side to move with best play, or {@link #UNKNOWN}. */
+    public static int probeWdl(Position pos) {
+        int pieces = Long.bitCount(pos.occupied());
+        if (pieces > MAX_PIECES) return UNKNOWN;
+        if (GameState.isInsufficientMaterial(pos)) return DRAW;
+        if (pieces != MAX_PIECES || !isReady()) return UNKNOWN;
+        int piece = extraPiece(pos);
+        int index = index(pos, piece);
+        boolean won = Piece.type(piece) == Piece.PAWN
+                ? (kpk[index >>> 6] & (1L << index)) != 0
+                : table(Piece.type(piece))[index] != 0;
+        if (!won) return DRAW;
+        return index < WEAK_TO_MOVE ? WIN : LOSS;
+    }
+
+    /**
+     * Plies until mate for a won or lost KQK or KRK position, 0 if the side
+     * to move is mated, -1 if the tables give no distance.
+     */
+    public static int mateDistance(Position pos) {
+        if (Long.bitCount(pos.occupied()) != MAX_PIECES || !isReady()) return -1;
+        int piece = extraPiece(pos);
+        int type = Piece.type(piece);
+        if (type != Piece.QUEEN && type != Piece.ROOK) return -1;
+        return (table(type)[index(pos, piece)] & 0xFF) - 1;
+    }
+
+    private static byte[] table(int type) {
+        return type == Piece.QUEEN ? kqk : krk;
+    }
+
+    private static int extraPiece(Position pos) {
+        for (int piece = 0; piece < 12; piece++) {
+            if (Piece.type(piece) != Piece.KING && pos.pieces(piece) != 0) return piece;
+        }
+        return Piece.NONE;
+    }
+
+    private static int index(Position pos, int piece) {
+        int strong = Piece.color(piece);
+        // mirroring the rows turns a black strong side into a white one
+        int flip = strong == Piece.WHITE ? 0 : 56;
+        int wk = pos.kingSquare(strong) ^ flip;
+        int bk = pos.kingSquare(strong ^ 1) ^ flip;
+        int p = Long.numberOfTrailingZeros(pos.pieces(piece)) ^ flip;
+        return index(pos.sideToMove() == strong ? 0 : 1, wk, bk, p);
+    }
+
+    private static int index(int stm, int wk, int bk, int p) {
+        return ((stm * 64 + wk) * 64 + bk) * 64 + p;
+    }
+
+    // --- generation; the strong side is White and moves towards row 0 ---
+
+    private static long bit(int sq) {
+        return 1L << sq;
+    }
+
+    private static long attacks(int type, int p, long occupied) {
+        switch (type) {
+            case Piece.PAWN: return Bitboards.PAWN_ATTACKS[Piece.WHITE][p];
+            case Piece.ROOK: return Bitboards.rookAttacks(p, occupied);
+            default: return Bitboards.queenAttacks(p, occupied);
+        }
+    }
+
+    private static boolean inCheck(int type, int wk, int bk, int p) {
+        return (attacks(type, p, bit(wk) | bit(bk)) & bit(bk)) != 0;
+    }
+
+    // target squares of the weak king; includes p if the piece can be taken
+    private static long weakMoves(int type, int wk, int bk, int p) {
+        // the king no longer blocks its own square once it moves
+        long attacked = Bitboards.KING_ATTACKS[wk] | bit(wk) | attacks(type, p, bit(wk));
+        return Bitboards.KING_ATTACKS[bk] & ~attacked;
+    }
+
+    private static boolean valid(int type, int stm, int wk, int bk, int p) {
+        if (wk == bk || wk == p || bk == p) return false;
+        if ((Bitboards.KING_ATTACKS[wk] & bit(bk)) != 0) return false;
+        if (type == Piece.PAWN && (Square.row(p) == 0 || Square.row(p) == 7)) return false;
+        // the weak king cannot be in check with the strong side to move
+        return stm == 1 || !inCheck(type, wk, bk, p);
+    }
+
+    /**
+     * Level by level: level 0 are the mates, odd levels strong-to-move
+     * positions with a move to the previous level, even levels weak-to-move
+     * positions whose moves all lead to won positions. The level is the
+     * distance to mate in plies (for KPK only up to promotion).
+     */
+    private static byte[] solve(int type) {
+        byte[] t = new byte[SIZE];
+        for (int wk = 0; wk < 64; wk++) {
+            for (int bk = 0; bk < 64; bk++) {
+                for (int p = 0; p < 64; p++) {
+                    if (valid(type, 1, wk, bk, p) && inCheck(type, wk, bk, p)
+                            && weakMoves(type, wk, bk, p) == 0) {
+                        t[index(1, wk, bk, p)] = 1;
+                    }
+                }
+            }
+        }
+        int lastChange = 0;
+        for (int level = 1; level - lastChange <= 2; level++) {
+            boolean strong = (level & 1) == 1;
+            for (int wk = 0; wk < 64; wk++) {
+                for (int bk = 0; bk < 64; bk++) {
+                    for (int p = 0; p < 64; p++) {
+                        int index = index(strong ? 0 : 1, wk, bk, p);
+                        if (t[index] != 0 || !valid(type, strong ? 0 : 1, wk, bk, p)) continue;
+                        boolean won = strong ? strongWins(type, t, level, wk, bk, p)
+                                : weakLoses(type, t, wk, bk, p);
+                        if (won) {
+                            t[index] = (byte) (level + 1);
+                            lastChange = level;
+                        }
+                    }
+                }
+            }
+        }
+        return t;
+    }
+
+    // a move to a weak-to-move position lost at level - 1
+    private static boolean strongWins(int type, byte[] t, int level, int wk, int bk, int p) {
+        long kingMoves = Bitboards.KING_ATTACKS[wk] & ~Bitboards.KING_ATTACKS[bk] & ~bit(bk) & ~bit(p);
+        for (long m = kingMoves; m != 0; m &= m - 1) {
+            if (t[index(1, Long.numberOfTrailingZeros(m), bk, p)] == level) return true;
+        }
+        if (type != Piece.PAWN) {
+            long moves = attacks(type, p, bit(wk) | bit(bk)) & ~bit(wk) & ~bit(bk);
+            for (long m = moves; m != 0; m &= m - 1) {
+                if (t[index(1, wk, bk, Long.numberOfTrailingZeros(m))] == level) return true;
+            }
+            return false;
+        }
+        int to = p - 8;
+        if (to == wk || to == bk) return false;
+        if (Square.row(to) == 0) return level == 1 && promotionWins(wk, bk, to);
+        if (t[index(1, wk, bk, to)] == level) return true;
+        int twoSteps = p - 16;
+        return Square.row(p) == 6 && twoSteps != wk && twoSteps != bk
+                && t[index(1, wk, bk, twoSteps)] == level;
+    }
+
+    // every move leads to a won position, and there is at least one
+    private static boolean weakLoses(int type, byte[] t, int wk, int bk, int p) {
+        long moves = weakMoves(type, wk, bk, p);
+        if (moves == 0 || (moves & bit(p)) != 0) return false;
+        for (long m = moves; m != 0; m &= m - 1) {
+            if (t[index(0, wk, Long.numberOfTrailingZeros(m), p)] == 0) return false;
+        }
+        return true;
+    }
+
+    // KQK and KRK are won unless the new piece is lost or it is stalemate
+    private static boolean promotionWins(int wk, int bk, int q) {
+        if ((Bitboards.KING_ATTACKS[bk] & bit(q)) != 0 && (Bitboards.KING_ATTACKS[wk] & bit(q)) == 0) {
+            return false;
+        }
+        return weakMoves(Piece.QUEEN, wk, bk, q) != 0 || inCheck(Piece.QUEEN, wk, bk, q)
+                || weakMoves(Piece.ROOK, wk, bk, q) != 0;
+    }
+}
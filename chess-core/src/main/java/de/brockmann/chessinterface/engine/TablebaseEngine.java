@@ -0,0 +1,135 @@
+package de.brockmann.chessinterface.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.brockmann.chessinterface.core.Move;
+import de.brockmann.chessinterface.core.MoveGenerator;
+import de.brockmann.chessinterface.core.Position;
+
+/**
+ * Answers KQK and KRK positions from the {@link Tablebase} with the
+ * shortest mate (or the longest defence) and passes everything else to the
+ * wrapped engine. Useful in front of engines that would otherwise search or
+ * send a request for every move of such an endgame.
+ */
+public class TablebaseEngine implements ChessEngine {
+
+    // long enough for every KQK and KRK mate
+    private static final int MAX_PV = 64;
+
+    private final ChessEngine engine;
+
+    public TablebaseEngine(ChessEngine engine) {
+        this.engine = engine;
+    }
+
+    @Override
+    public boolean start() {
+        Tablebase.generateInBackground();
+        return engine.start();
+    }
+
+    @Override
+    public void stop() {
+        engine.stop();
+    }
+
+    @Override
+    public void cancel() {
+        engine.cancel();
+    }
+
+    @Override
+    public void setElo(int elo) {
+        engine.setElo(elo);
+    }
+
+    @Override
+    public void setMultiPv(int lines) {
+        engine.setMultiPv(lines);
+    }
+
+    @Override
+    public String getBestMove(String fen, int depth) {
+        AnalysisResult exact = probe(fen);
+        return exact != null ? exact.getBestMove() : engine.getBestMove(fen, depth);
+    }
+
+    @Override
+    public String getBestMove(String fen, SearchLimits limits) {
+        AnalysisResult exact = probe(fen);
+        return exact != null ? exact.getBestMove() : engine.getBestMove(fen, limits);
+    }
+
+    @Override
+    public AnalysisResult analyse(String fen, int depth) {
+        AnalysisResult exact = probe(fen);
+        return exact != null ? exact : engine.analyse(fen, depth);
+    }
+
+    @Override
+    public AnalysisResult analyse(String fen, SearchLimits limits) {
+        AnalysisResult exact = probe(fen);
+        return exact != null ? exact : engine.analyse(fen, limits);
+    }
+
+    /** An exact result cannot get any deeper, so it is reported once. */
+    @Override
+    public void analyseInfinite(String fen, AnalysisListener listener) {
+        AnalysisResult exact = probe(fen);
+        if (exact != null) listener.onInfo(exact);
+        else engine.analyseInfinite(fen, listener);
+    }
+
+    /**
+     * Exact result for {@code fen}, or null if the tables do not give a
+     * distance to mate. The line follows the best moves to the mate.
+     */
+    public static AnalysisResult probe(String fen) {
+        long start = System.nanoTime();
+        Position pos = new Position(fen);
+        int wdl = Tablebase.probeWdl(pos);
+        int distance = Tablebase.mateDistance(pos);
+        if (wdl == Tablebase.DRAW || wdl == Tablebase.UNKNOWN || distance <= 0) return null;
+
+        List<String> pv = new ArrayList<>();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        while (pv.size() < MAX_PV) {
+            int move = bestMove(pos, moves);
+            if (move == Move.NONE) break;
+            pv.add(Move.toUci(move));
+            pos.makeMove(move);
+        }
+        if (pv.isEmpty()) return null;
+        boolean win = wdl == Tablebase.WIN;
+        int score = win ? Search.MATE - distance : -Search.MATE + distance;
+        int mate = win ? (distance + 1) / 2 : -distance / 2;
+        long timeMs = (System.nanoTime() - start) / 1_000_000L;
+        // an exact answer counts as deeper than any search
+        return new AnalysisResult(pv.get(0), score, mate, Search.MAX_PLY - 1, pv, 0, timeMs);
+    }
+
+    // the winner mates fastest, the loser holds out longest
+    private static int bestMove(Position pos, int[] moves) {
+        int count = MoveGenerator.generateLegalMoves(pos, moves);
+        int best = Move.NONE;
+        int bestKey = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            pos.makeMove(moves[i]);
+            int wdl = Tablebase.probeWdl(pos);
+            int distance = Tablebase.mateDistance(pos);
+            pos.unmakeMove();
+            int key;
+            if (wdl == Tablebase.LOSS && distance >= 0) key = 1000 - distance;
+            else if (wdl == Tablebase.WIN && distance >= 0) key = distance - 1000;
+            // the piece was lost: a draw, better than any loss
+            else key = wdl == Tablebase.DRAW ? 0 : Integer.MIN_VALUE + 1;
+            if (key > bestKey) {
+                bestKey = key;
+                best = moves[i];
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,58 @@
+package de.brockmann.chessinterface.engine;
+
+/**
+ * Turns a time budget into {@link SearchLimits} for one move: either a fixed
+ * budget per move or the remaining time on a game clock. The hard limit is
+ * what the move may cost at most; the soft limit is where the search
+ * normally stops, earlier if its best move has been stable for a while.
+ */
+public final class TimeManager {
+
+    // kept back for everything around the search: the UI, thread switches, GC
+    static final long OVERHEAD_MS = 30;
+    private static final int DEFAULT_MOVES_TO_GO = 30;
+
+    private final long moveTimeMs;
+    private final long remainingMs;
+    private final long incrementMs;
+    private final int movesToGo;
+
+    private TimeManager(long moveTimeMs, long remainingMs, long incrementMs, int movesToGo) {
+        this.moveTimeMs = moveTimeMs;
+        this.remainingMs = remainingMs;
+        this.incrementMs = incrementMs;
+        this.movesToGo = movesToGo;
+    }
+
+    /** Every move may take up to {@code moveTimeMs}. */
+    public static TimeManager perMove(long moveTimeMs) {
+        return new TimeManager(moveTimeMs, 0, 0, 0);
+    }
+
+    /**
+     * Budget from a game clock.
+     *
+     * @param movesToGo moves until the next time control, 0 if unknown
+     */
+    public static TimeManager clock(long remainingMs, long incrementMs, int movesToGo) {
+        return new TimeManager(0, remainingMs, incrementMs, movesToGo);
+    }
+
+    /** Limits for the next move, searching at most {@code maxDepth} plies. */
+    public SearchLimits limits(int maxDepth) {
+        long hard;
+        long soft;
+        if (moveTimeMs > 0) {
+            hard = Math.max(1, moveTimeMs - OVERHEAD_MS);
+            soft = hard / 2;
+        } else {
+            long available = Math.max(1, remainingMs - OVERHEAD_MS);
+            int moves = movesToGo > 0 ? movesToGo : DEFAULT_MOVES_TO_GO;
+            soft = available / moves + incrementMs * 3 / 4;
+            // never more than a third of the clock on one move
+            hard = Math.max(1, Math.min(available / 3, soft * 4));
+            soft = Math.max(1, Math.min(soft, hard));
+        }
+        return new SearchLimits(maxDepth, soft, hard, 0);
+    }
+}
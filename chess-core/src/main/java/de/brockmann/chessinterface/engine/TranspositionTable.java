@@ -0,0 +1,133 @@
+package de.brockmann.chessinterface.engine;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size transposition table in a flat {@code long[]}, safe to share
+ * between search threads without locks.
+ *
+ * <p>Every entry takes two longs: {@code key ^ data} and {@code data}. A
+ * reader accepts the data only if XOR-ing both words gives back its key, so
+ * an entry torn by a concurrent write simply looks like a miss. Entries are
+ * grouped in buckets of {@link #BUCKET_SIZE}; a store replaces the entry of
+ * the same position if present, otherwise the one that is shallowest and
+ * oldest.
+ *
+ * <p>Packed data: move (bits 0-16), score (bits 17-32, signed), depth
+ * (bits 33-40), bound (bits 41-42) and age (bits 43-48).
+ */
+public final class TranspositionTable {
+
+    public static final int BOUND_NONE = 0;
+    public static final int BOUND_UPPER = 1;
+    public static final int BOUND_LOWER = 2;
+    public static final int BOUND_EXACT = 3;
+
+    static final int BUCKET_SIZE = 4;
+    private static final int ENTRY_BYTES = 16;
+    private static final int AGE_MASK = 0x3F;
+
+    private final long[] table;
+    private final int bucketMask;
+    private volatile int age;
+
+    public TranspositionTable(int sizeMb) {
+        long entries = Math.max(BUCKET_SIZE, (long) sizeMb * 1024 * 1024 / ENTRY_BYTES);
+        long buckets = Long.highestOneBit(Math.min(entries / BUCKET_SIZE, 1 << 24));
+        table = new long[(int) (buckets * BUCKET_SIZE * 2)];
+        bucketMask = (int) buckets - 1;
+    }
+
+    /** Size of the table in bytes. */
+    public long sizeBytes() {
+        return (long) table.length * 8;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0);
+        age = 0;
+    }
+
+    /**
+     * Marks the start of a new search. Entries from earlier searches stay
+     * usable but are replaced first.
+     */
+    public void newSearch() {
+        age = (age + 1) & AGE_MASK;
+    }
+
+    /** Packed data for {@code key}, or 0 if there is none. */
+    public long probe(long key) {
+        int base = bucketIndex(key);
+        for (int i = base; i < base + BUCKET_SIZE * 2; i += 2) {
+            long data = table[i + 1];
+            if ((table[i] ^ data) == key && data != 0) return data;
+        }
+        return 0;
+    }
+
+    public void store(long key, int move, int score, int depth, int bound) {
+        int base = bucketIndex(key);
+        int currentAge = age;
+        int target = base;
+        int worst = Integer.MAX_VALUE;
+        for (int i = base; i < base + BUCKET_SIZE * 2; i += 2) {
+            long data = table[i + 1];
+            if (data == 0 || (table[i] ^ data) == key) {
+                target = i;
+                // keep the better move if the new search did not find one
+                if (move == 0 && data != 0) move = move(data);
+                break;
+            }
+            // an entry from an older search counts as 8 plies shallower per search
+            int staleness = (currentAge - age(data)) & AGE_MASK;
+            int value = depth(data) - 8 * staleness;
+            if (value < worst) {
+                worst = value;
+                target = i;
+            }
+        }
+        long data = (move & 0x1FFFFL)
+                | ((long) (score & 0xFFFF) << 17)
+                | ((long) (depth & 0xFF) << 33)
+                | ((long) bound << 41)
+                | ((long) currentAge << 43);
+        table[target] = key ^ data;
+        table[target + 1] = data;
+    }
+
+    /** Permille of sampled entries written during the current search. */
+    public int hashfull() {
+        int samples = Math.min(1000, table.length / 2);
+        int used = 0;
+        for (int i = 0; i < samples; i++) {
+            long data = table[i * 2 + 1];
+            if (data != 0 && age(data) == age) used++;
+        }
+        return used * 1000 / samples;
+    }
+
+    private int bucketIndex(long key) {
+        return ((int) (key >>> 32) & bucketMask) * BUCKET_SIZE * 2;
+    }
+
+    public static int move(long entry) {
+        return (int) (entry & 0x1FFFF);
+    }
+
+    public static int score(long entry) {
+        return (short) (entry >>> 17);
+    }
+
+    public static int depth(long entry) {
+        return (int) ((entry >>> 33) & 0xFF);
+    }
+
+    public static int bound(long entry) {
+        return (int) ((entry >>> 41) & 3);
+    }
+
+    static int age(long entry) {
+        return (int) ((entry >>> 43) & AGE_MASK);
+    }
+}
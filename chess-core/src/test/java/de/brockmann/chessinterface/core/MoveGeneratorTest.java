@@ -0,0 +1,83 @@
+package de.brockmann.chessinterface.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MoveGeneratorTest {
+
+    private static final String KIWIPETE =
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    private static long perft(Position pos, int depth) {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegalMoves(pos, moves);
+        if (depth == 1) return count;
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            pos.makeMove(moves[i]);
+            nodes += perft(pos, depth - 1);
+            pos.unmakeMove();
+        }
+        return nodes;
+    }
+
+    @Test
+    public void perftStartPosition() {
+        assertEquals(20, perft(new Position(), 1));
+        assertEquals(8902, perft(new Position(), 3));
+        assertEquals(197281, perft(new Position(), 4));
+    }
+
+    @Test
+    public void perftKiwipete() {
+        assertEquals(48, perft(new Position(KIWIPETE), 1));
+        assertEquals(97862, perft(new Position(KIWIPETE), 3));
+    }
+
+    @Test
+    public void perftEnPassantAndPins() {
+        assertEquals(43238, perft(new Position("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1"), 4));
+    }
+
+    @Test
+    public void stagesPartitionLegalMoves() {
+        Position pos = new Position(KIWIPETE);
+        int[] buf = new int[MoveGenerator.MAX_MOVES];
+        int captures = MoveGenerator.generateCaptures(pos, buf);
+        int quiets = MoveGenerator.generateQuiets(pos, buf);
+        assertEquals(MoveGenerator.generateLegalMoves(pos, buf), captures + quiets);
+        assertEquals(8, captures);
+    }
+
+    @Test
+    public void checkmateHasNoMoves() {
+        Position pos = new Position("rnb1kbnr/pppp1ppp/8/4p3/6Pq/5P2/PPPPP2P/RNBQKBNR w KQkq - 1 3");
+        assertTrue(pos.isInCheck());
+        assertEquals(0, MoveGenerator.generateLegalMoves(pos, new int[MoveGenerator.MAX_MOVES]));
+    }
+
+    @Test
+    public void gameStateDetectsStalemate() {
+        Position pos = new Position("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1");
+        assertEquals(GameState.STALEMATE, GameState.of(pos, null, new int[MoveGenerator.MAX_MOVES]));
+    }
+
+    @Test
+    public void legalTargetsMatchIsLegal() {
+        // the board only bit-tests this mask on drop
+        String[] fens = {KIWIPETE, "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                "4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 1", "4k3/8/8/8/8/8/5r2/R3K2R w KQ - 0 1"};
+        int[] buf = new int[MoveGenerator.MAX_MOVES];
+        for (String fen : fens) {
+            Position pos = new Position(fen);
+            for (int from = 0; from < 64; from++) {
+                long mask = MoveGenerator.legalTargets(pos, from, buf);
+                for (int to = 0; to < 64; to++) {
+                    assertEquals(fen + " " + from + "-" + to,
+                            pos.isLegal(from, to), (mask & (1L << to)) != 0);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package de.brockmann.chessinterface.core;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class PerftTest {
+
+    @Test
+    public void parallelPerftMatchesKnownCount() {
+        assertEquals(197281, Perft.perft(Position.START_FEN, 4));
+    }
+
+    @Test
+    public void divideListsEveryRootMove() {
+        Map<String, Long> counts = Perft.divide(Position.START_FEN, 2, ForkJoinPool.commonPool(), null);
+        assertEquals(20, counts.size());
+        assertEquals(Long.valueOf(20), counts.get("e2e4"));
+    }
+
+    @Test
+    public void cacheDoesNotChangeCounts() {
+        PerftCache cache = new PerftCache(1);
+        Map<String, Long> counts = Perft.divide(
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                3, ForkJoinPool.commonPool(), cache);
+        long total = 0;
+        for (long n : counts.values()) total += n;
+        assertEquals(97862, total);
+    }
+
+    @Test
+    public void standardSuiteUpToDepthThree() throws Exception {
+        assertTrue(Perft.runSuite("src/test/resources/perft/standard.epd", 3,
+                ForkJoinPool.commonPool(), null));
+    }
+}
@@ -0,0 +1,128 @@
+package de.brockmann.chessinterface.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PositionTest {
+
+    @Test
+    public void fenRoundTrip() {
+        String fen = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+        assertEquals(fen, new Position(fen).getFEN());
+        assertEquals(Position.START_FEN, new Position().getFEN());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownSideToMove() {
+        new Position("4k3/8/8/8/8/8/8/4K3 x - - 0 1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsShortRank() {
+        new Position("4k3/8/8/8/7/8/8/4K3 w - - 0 1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsLongRank() {
+        // 64 squares in total, but the fifth rank spills into the sixth
+        new Position("4k3/8/8/8/8p/7/8/4K3 w - - 0 1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMissingKing() {
+        new Position("4k3/8/8/8/8/8/8/8 w - - 0 1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsSecondKing() {
+        new Position("4k3/8/8/8/8/8/8/3KK3 w - - 0 1");
+    }
+
+    @Test
+    public void doublePushSetsEnPassantSquare() {
+        Position p = new Position();
+        p.makeMove(Move.encode(Square.fromAlgebraic("e2"), Square.fromAlgebraic("e4")));
+        assertEquals("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1", p.getFEN());
+    }
+
+    @Test
+    public void enPassantCaptureRemovesPawn() {
+        Position p = new Position("4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 1");
+        int from = Square.fromAlgebraic("e5");
+        int to = Square.fromAlgebraic("d6");
+        assertTrue(p.isLegal(from, to));
+        p.makeMove(Move.encode(from, to));
+        assertEquals(Piece.NONE, p.pieceAt(Square.fromAlgebraic("d5")));
+        assertEquals(Piece.W_PAWN, p.pieceAt(to));
+    }
+
+    @Test
+    public void castlingThroughCheckIsIllegal() {
+        Position p = new Position("4k3/8/8/8/8/8/5r2/R3K2R w KQ - 0 1");
+        int e1 = Square.fromAlgebraic("e1");
+        assertFalse(p.isLegal(e1, Square.fromAlgebraic("g1")));
+        assertTrue(p.isPseudoLegal(e1, Square.fromAlgebraic("c1")));
+    }
+
+    @Test
+    public void rookCaptureClearsCastlingRight() {
+        Position p = new Position("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1");
+        p.makeMove(Move.encode(Square.fromAlgebraic("a1"), Square.fromAlgebraic("a8")));
+        assertEquals(Position.CASTLE_WHITE_KINGSIDE | Position.CASTLE_BLACK_KINGSIDE, p.castlingRights());
+    }
+
+    @Test
+    public void pawnPromotes() {
+        Position p = new Position("8/4P3/8/8/8/8/8/k6K w - - 0 1");
+        p.makeMove(Move.encode(Square.fromAlgebraic("e7"), Square.fromAlgebraic("e8"),
+                Piece.KNIGHT, Move.FLAG_NORMAL));
+        assertEquals(Piece.W_KNIGHT, p.pieceAt(Square.fromAlgebraic("e8")));
+    }
+
+    @Test
+    public void incrementalHashMatchesRecomputed() {
+        Position p = new Position("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegalMoves(p, moves);
+        for (int i = 0; i < count; i++) {
+            p.makeMove(moves[i]);
+            assertEquals(Move.toUci(moves[i]), p.computeHash(), p.hash());
+            p.unmakeMove();
+        }
+    }
+
+    @Test
+    public void knightShuffleRepeatsThreeTimes() {
+        Position p = new Position();
+        RepetitionHistory history = new RepetitionHistory();
+        history.push(p.hash(), p.halfmoveClock());
+        String[] moves = {"g1f3", "g8f6", "f3g1", "f6g8", "g1f3", "g8f6", "f3g1", "f6g8"};
+        for (String m : moves) {
+            p.makeMove(Move.encode(Square.fromAlgebraic(m.substring(0, 2)), Square.fromAlgebraic(m.substring(2))));
+            history.push(p.hash(), p.halfmoveClock());
+        }
+        assertEquals(new Position().hash(), p.hash());
+        assertEquals(3, history.count(p.hash()));
+    }
+
+    @Test
+    public void unmakeRestoresEveryChildPosition() {
+        String[] fens = {
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                "8/8/8/KPp4r/8/8/8/7k w - c6 0 1"
+        };
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        for (String fen : fens) {
+            Position p = new Position(fen);
+            int count = MoveGenerator.generateLegalMoves(p, moves);
+            for (int i = 0; i < count; i++) {
+                p.makeMove(moves[i]);
+                p.unmakeMove();
+                assertEquals(Move.toUci(moves[i]), fen, p.getFEN());
+                assertEquals(p.computeHash(), p.hash());
+            }
+        }
+    }
+}
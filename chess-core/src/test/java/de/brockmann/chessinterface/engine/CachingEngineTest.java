@@ -0,0 +1,173 @@
+package de.brockmann.chessinterface.engine;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.brockmann.chessinterface.core.Position;
+
+import static org.junit.Assert.*;
+
+public class CachingEngineTest {
+
+    /** Answers every request with e2e4 (and a3, b3, ... as further lines) and counts the calls. */
+    private static final class CountingEngine implements ChessEngine {
+        int calls;
+        int multiPv = 1;
+        // deepest depth reached, as if every search ran out of time there
+        int maxDepth = Integer.MAX_VALUE;
+
+        @Override public boolean start() { return true; }
+        @Override public void stop() {}
+        @Override public void cancel() {}
+        @Override public void setElo(int elo) {}
+        @Override public void setMultiPv(int lines) { multiPv = lines; }
+
+        @Override
+        public String getBestMove(String fen, int depth) {
+            return analyse(fen, depth).getBestMove();
+        }
+
+        @Override
+        public AnalysisResult analyse(String fen, int depth) {
+            calls++;
+            depth = Math.min(depth, maxDepth);
+            if (multiPv == 1) {
+                return new AnalysisResult("e2e4", 30, 0, depth, Arrays.asList("e2e4", "e7e5"), 1000, 5);
+            }
+            List<AnalysisResult> lines = new ArrayList<>();
+            lines.add(new AnalysisResult("e2e4", 30, 0, depth, Arrays.asList("e2e4", "e7e5"), 1000, 5));
+            for (int i = 1; i < multiPv; i++) {
+                String move = (char) ('a' + i - 1) + "2" + (char) ('a' + i - 1) + "3";
+                lines.add(new AnalysisResult(move, 30 - 10 * i, 0, depth, Arrays.asList(move), 1000, 5));
+            }
+            return new AnalysisResult("e2e4", 30, 0, depth, Arrays.asList("e2e4", "e7e5"), 5,
+                    new long[] {1000}, lines);
+        }
+    }
+
+    @Test
+    public void deeperResultAnswersShallowerRequest() {
+        CountingEngine inner = new CountingEngine();
+        CachingEngine cache = new CachingEngine(inner, 100, 1 << 20);
+        cache.analyse(Position.START_FEN, 12);
+        assertEquals("e2e4", cache.getBestMove(Position.START_FEN, 8));
+        assertEquals(1, inner.calls);
+        cache.analyse(Position.START_FEN, 14);
+        assertEquals(2, inner.calls);
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void resultCountsForTheDepthReached() {
+        CountingEngine inner = new CountingEngine();
+        inner.maxDepth = 6;
+        CachingEngine cache = new CachingEngine(inner, 100, 1 << 20);
+        assertEquals(6, cache.analyse(Position.START_FEN, 10).getDepth());
+        cache.analyse(Position.START_FEN, 10);
+        assertEquals(2, inner.calls);
+        assertNotNull(cache.lookup(Position.START_FEN, 6));
+        assertNull(cache.peek(Position.START_FEN, 7));
+    }
+
+    @Test
+    public void moveCountersAreIgnored() {
+        CountingEngine inner = new CountingEngine();
+        CachingEngine cache = new CachingEngine(inner, 100, 1 << 20);
+        cache.analyse("4k3/8/8/8/8/8/8/4K2R w K - 0 1", 5);
+        cache.analyse("4k3/8/8/8/8/8/8/4K2R w K - 12 40", 5);
+        assertEquals(1, inner.calls);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        CountingEngine inner = new CountingEngine();
+        CachingEngine cache = new CachingEngine(inner, 2, 1 << 20);
+        String a = "4k3/8/8/8/8/8/8/4K3 w - - 0 1";
+        String b = "4k3/8/8/8/8/8/8/3K4 w - - 0 1";
+        String c = "4k3/8/8/8/8/8/8/2K5 w - - 0 1";
+        cache.analyse(a, 5);
+        cache.analyse(b, 5);
+        cache.analyse(a, 5);
+        cache.analyse(c, 5);
+        assertEquals(2, cache.size());
+        assertNotNull(cache.lookup(a, 5));
+        assertNull(cache.lookup(b, 5));
+    }
+
+    @Test
+    public void byteLimitBoundsMemory() {
+        CachingEngine cache = new CachingEngine(new CountingEngine(), 1000, 1000);
+        for (int i = 1; i <= 8; i++) cache.analyse("4k3/8/8/8/8/8/8/" + i + "K" + (7 - i == 0 ? "" : 7 - i) + " w - - 0 1", 3);
+        assertTrue(cache.sizeBytes() <= 1000);
+        assertTrue(cache.size() > 0);
+    }
+
+    @Test
+    public void diskStoreSurvivesNewInstance() throws Exception {
+        File dir = Files.createTempDirectory("evalcache").toFile();
+        CountingEngine inner = new CountingEngine();
+        new CachingEngine(inner, 100, 1 << 20, dir).analyse(Position.START_FEN, 10);
+
+        CachingEngine fresh = new CachingEngine(inner, 100, 1 << 20, dir);
+        AnalysisResult result = fresh.analyse(Position.START_FEN, 10);
+        assertEquals(1, inner.calls);
+        assertEquals(1, fresh.getDiskHits());
+        assertEquals(30, result.getScore());
+        assertEquals(Arrays.asList("e2e4", "e7e5"), result.getPv());
+    }
+
+    @Test
+    public void withEngineSharesTheCache() {
+        CountingEngine first = new CountingEngine();
+        CountingEngine second = new CountingEngine();
+        CachingEngine cache = new CachingEngine(first, 100, 1 << 20);
+        CachingEngine shared = cache.withEngine(second);
+        shared.analyse(Position.START_FEN, 10);
+        cache.analyse(Position.START_FEN, 10);
+        assertEquals(0, first.calls);
+        assertEquals(1, second.calls);
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void singleLineEntryAnswersLookupsButNotMultiPvSearch() {
+        CountingEngine inner = new CountingEngine();
+        CachingEngine cache = new CachingEngine(inner, 100, 1 << 20);
+        cache.analyse(Position.START_FEN, 10);
+        cache.setMultiPv(3);
+        assertEquals("e2e4", cache.peek(Position.START_FEN, 10).getBestMove());
+        assertEquals(1, cache.lookup(Position.START_FEN, 10).getLines().size());
+        assertEquals(3, cache.analyse(Position.START_FEN, 10).getLines().size());
+        assertEquals(2, inner.calls);
+    }
+
+    @Test
+    public void multiPvLinesSurviveWithEngineAndDisk() throws Exception {
+        File dir = Files.createTempDirectory("evalcache").toFile();
+        CountingEngine first = new CountingEngine();
+        CountingEngine second = new CountingEngine();
+        CachingEngine cache = new CachingEngine(first, 100, 1 << 20, dir);
+        cache.setMultiPv(3);
+        CachingEngine shared = cache.withEngine(second);
+        assertEquals(3, second.multiPv);
+        shared.analyse(Position.START_FEN, 10);
+        assertEquals(3, cache.analyse(Position.START_FEN, 10).getLines().size());
+        assertEquals(0, first.calls);
+
+        CachingEngine fresh = new CachingEngine(first, 100, 1 << 20, dir);
+        fresh.setMultiPv(3);
+        AnalysisResult result = fresh.analyse(Position.START_FEN, 10);
+        assertEquals(0, first.calls);
+        assertEquals(1, fresh.getDiskHits());
+        assertEquals(3, result.getLines().size());
+        assertEquals("a2a3", result.getLines().get(1).getBestMove());
+        assertEquals(10, result.getLines().get(2).getScore());
+        assertEquals(Arrays.asList("e2e4", "e7e5"), result.getPv());
+    }
+}
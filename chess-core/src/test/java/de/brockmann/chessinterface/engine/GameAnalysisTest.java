@@ -0,0 +1,64 @@
+package de.brockmann.chessinterface.engine;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class GameAnalysisTest {
+
+    private static final String WHITE = "4k3/8/8/8/8/8/8/4K3 w - - 0 1";
+    private static final String BLACK = "4k3/8/8/8/8/8/8/4K3 b - - 0 1";
+
+    private static AnalysisResult result(int score) {
+        return new AnalysisResult("e1e2", score, 0, 10, null, 0, 0);
+    }
+
+    @Test
+    public void analysesAroundTheFocusFirst() throws Exception {
+        List<String> fens = new ArrayList<>();
+        for (int i = 0; i < 7; i++) fens.add(WHITE.replace(" 1", " " + (i + 1)));
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(1);
+        ChessEngine engine = new LocalEngineStub();
+
+        new GameAnalysis(engine, 1, 5).start(fens, 3, new GameAnalysis.Listener() {
+            @Override
+            public void onResult(int index, AnalysisResult result) {
+                order.add(index);
+            }
+
+            @Override
+            public void onFinished() {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(3, 4, 2, 5, 1, 6, 0), order);
+    }
+
+    @Test
+    public void detectsBlunderForEitherSide() {
+        // white to move at +0.3, after white's move black is to move at +5 for black
+        assertTrue(GameAnalysis.isBlunder(WHITE, result(30), BLACK, result(500)));
+        assertFalse(GameAnalysis.isBlunder(WHITE, result(30), BLACK, result(-20)));
+        // black to move at 0, after black's move white is up three pawns
+        assertTrue(GameAnalysis.isBlunder(BLACK, result(0), WHITE, result(300)));
+        assertEquals(-GameAnalysis.SCORE_CLAMP, GameAnalysis.whiteScore(BLACK, result(5000)));
+    }
+
+    private static final class LocalEngineStub implements ChessEngine {
+        @Override public boolean start() { return true; }
+        @Override public void stop() {}
+        @Override public void cancel() {}
+        @Override public void setElo(int elo) {}
+        @Override public String getBestMove(String fen, int depth) { return "e1e2"; }
+        @Override public AnalysisResult analyse(String fen, int depth) { return result(0); }
+    }
+}
@@ -0,0 +1,200 @@
+package de.brockmann.chessinterface.engine;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import de.brockmann.chessinterface.core.Position;
+
+import static org.junit.Assert.*;
+
+public class LocalEngineTest {
+
+    private static LocalEngine engine() {
+        LocalEngine engine = new LocalEngine(1);
+        engine.start();
+        return engine;
+    }
+
+    @Test
+    public void findsBackRankMate() {
+        AnalysisResult result = engine().analyse("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1", 4);
+        assertEquals("a1a8", result.getBestMove());
+        assertEquals(1, result.getMate());
+    }
+
+    @Test
+    public void capturesHangingQueen() {
+        assertEquals("e4d5", engine().getBestMove("4k3/8/8/3q4/4P3/8/8/4K3 w - - 0 1", 3));
+    }
+
+    @Test
+    public void reportsBeingMated() {
+        AnalysisResult result = engine().analyse("k7/8/1K6/8/8/8/8/7R b - - 0 1", 4);
+        assertEquals(-1, result.getMate());
+    }
+
+    @Test
+    public void noMoveInCheckmate() {
+        assertNull(engine().getBestMove("R5k1/5ppp/8/8/8/8/8/6K1 b - - 0 1", 3));
+    }
+
+    @Test
+    public void stoppedEngineDoesNotSearch() {
+        LocalEngine engine = engine();
+        engine.stop();
+        assertNull(engine.analyse(Position.START_FEN, 3));
+    }
+
+    @Test
+    public void helperThreadsReportNodes() {
+        LocalEngine engine = new LocalEngine(1, 3);
+        engine.start();
+        AnalysisResult result = engine.analyse("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1", 4);
+        engine.stop();
+        assertEquals("a1a8", result.getBestMove());
+        assertEquals(3, result.getThreadCount());
+        long sum = 0;
+        for (int i = 0; i < result.getThreadCount(); i++) sum += result.getThreadNodes(i);
+        assertEquals(result.getNodes(), sum);
+    }
+
+    @Test
+    public void cancelDropsRunningSearch() throws Exception {
+        LocalEngine engine = engine();
+        engine.setMoveTime(0);
+        Thread canceller = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ignored) {
+            }
+            engine.cancel();
+        });
+        canceller.start();
+        long start = System.currentTimeMillis();
+        assertNull(engine.analyse(Position.START_FEN, 60));
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        canceller.join();
+        // still usable afterwards
+        assertNotNull(engine.getBestMove(Position.START_FEN, 2));
+    }
+
+    @Test
+    public void cancelReachesRequestWaitingForTheEngine() throws Exception {
+        LocalEngine engine = engine();
+        engine.setMoveTime(0);
+        CountDownLatch searching = new CountDownLatch(1);
+        Thread first = new Thread(() -> engine.analyseInfinite(Position.START_FEN, info -> searching.countDown()));
+        first.start();
+        assertTrue(searching.await(10, TimeUnit.SECONDS));
+        AnalysisResult[] waiting = new AnalysisResult[1];
+        Thread second = new Thread(() -> waiting[0] = engine.analyse(Position.START_FEN, 60));
+        second.start();
+        while (second.getState() != Thread.State.BLOCKED) Thread.sleep(5);
+        engine.cancel();
+        first.join(5000);
+        second.join(5000);
+        assertFalse(second.isAlive());
+        assertNull(waiting[0]);
+    }
+
+    @Test
+    public void infiniteAnalysisStreamsUntilCancelled() throws Exception {
+        LocalEngine engine = engine();
+        List<AnalysisResult> infos = new CopyOnWriteArrayList<>();
+        CountDownLatch deepEnough = new CountDownLatch(1);
+        Thread worker = new Thread(() -> engine.analyseInfinite(Position.START_FEN, info -> {
+            infos.add(info);
+            if (info.getDepth() >= 4) deepEnough.countDown();
+        }));
+        worker.start();
+        assertTrue(deepEnough.await(10, TimeUnit.SECONDS));
+        engine.cancel();
+        worker.join(5000);
+        assertFalse(worker.isAlive());
+        for (int i = 0; i < infos.size(); i++) {
+            assertEquals(i + 1, infos.get(i).getDepth());
+            assertFalse(infos.get(i).getPv().isEmpty());
+        }
+    }
+
+    @Test
+    public void multiPvReturnsDistinctLinesBestFirst() {
+        LocalEngine engine = engine();
+        engine.setMultiPv(3);
+        AnalysisResult result = engine.analyse("4k3/8/8/3q4/4P3/8/8/4K3 w - - 0 1", 3);
+        List<AnalysisResult> lines = result.getLines();
+        assertEquals(3, lines.size());
+        assertEquals("e4d5", lines.get(0).getBestMove());
+        assertEquals(result.getBestMove(), lines.get(0).getBestMove());
+        assertNotEquals(lines.get(0).getBestMove(), lines.get(1).getBestMove());
+        assertNotEquals(lines.get(1).getBestMove(), lines.get(2).getBestMove());
+        assertNotEquals(lines.get(0).getBestMove(), lines.get(2).getBestMove());
+        assertTrue(lines.get(0).getScore() >= lines.get(1).getScore());
+        assertTrue(lines.get(1).getScore() >= lines.get(2).getScore());
+    }
+
+    @Test
+    public void timeManagedSearchStaysWithinTheHardLimit() {
+        SearchLimits limits = TimeManager.perMove(300).limits(Search.MAX_PLY - 1);
+        assertTrue(limits.getSoftTimeMs() < limits.getTimeMs());
+        long start = System.nanoTime();
+        AnalysisResult result = engine().analyse(Position.START_FEN, limits);
+        long spentMs = (System.nanoTime() - start) / 1_000_000L;
+        assertNotNull(result.getBestMove());
+        assertTrue(spentMs < 300 + 100);
+    }
+
+    @Test
+    public void clockSplitsTheRemainingTime() {
+        SearchLimits limits = TimeManager.clock(60_000, 0, 0).limits(20);
+        assertEquals(20, limits.getDepth());
+        assertTrue(limits.getSoftTimeMs() > 1000 && limits.getSoftTimeMs() < 5000);
+        assertTrue(limits.getTimeMs() <= 60_000 / 3);
+        // the last move before the time control may not use up the clock
+        assertTrue(TimeManager.clock(3000, 0, 1).limits(20).getTimeMs() < 3000);
+    }
+
+    @Test
+    public void weakLevelsSearchLessAndVary() {
+        StrengthLimit weak = StrengthLimit.forElo(StrengthLimit.MIN_ELO);
+        StrengthLimit strong = StrengthLimit.forElo(2600);
+        assertNull(StrengthLimit.forElo(StrengthLimit.MAX_ELO));
+        assertTrue(weak.getNodes() < strong.getNodes());
+        assertTrue(weak.getDepth() < strong.getDepth());
+        assertTrue(weak.getNoiseCp() > strong.getNoiseCp());
+
+        LocalEngine engine = engine();
+        engine.setElo(StrengthLimit.MIN_ELO);
+        AnalysisResult result = engine.analyse(Position.START_FEN, SearchLimits.depth(20));
+        assertTrue(result.getNodes() <= weak.getNodes() + 100);
+        Set<String> moves = new HashSet<>();
+        for (int i = 0; i < 20; i++) moves.add(engine.getBestMove(Position.START_FEN, 20));
+        assertTrue(moves.size() > 1);
+    }
+
+    @Test
+    public void noisyPickPrefersBetterLines() {
+        List<AnalysisResult> lines = Arrays.asList(line("e2e4", 50), line("d2d4", 40),
+                line("a2a3", -400));
+        StrengthLimit limit = StrengthLimit.forElo(1200);
+        Random random = new Random(1);
+        int blunders = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (limit.pick(lines, random).equals("a2a3")) blunders++;
+        }
+        assertTrue(blunders < 50);
+        assertEquals("e2e4", StrengthLimit.forElo(2799).pick(lines.subList(0, 1), random));
+    }
+
+    private static AnalysisResult line(String move, int score) {
+        return new AnalysisResult(move, score, 0, 1, Arrays.asList(move), 0, 0);
+    }
+}
@@ -0,0 +1,139 @@
+package de.brockmann.chessinterface.engine;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import de.brockmann.chessinterface.core.Position;
+
+import static org.junit.Assert.*;
+
+public class PolyglotBookTest {
+
+    // any table works as long as book and lookup agree on it
+    private static long[] randomKeys() {
+        Random random = new Random(1);
+        long[] keys = new long[PolyglotBook.KEY_COUNT];
+        for (int i = 0; i < keys.length; i++) keys[i] = random.nextLong();
+        return keys;
+    }
+
+    private static int move(String from, String to) {
+        return (from.charAt(0) - 'a') << 6 | (from.charAt(1) - '1') << 9
+                | (to.charAt(0) - 'a') | (to.charAt(1) - '1') << 3;
+    }
+
+    private static final class Entry {
+        final long key;
+        final int move;
+        final int weight;
+
+        Entry(long key, int move, int weight) {
+            this.key = key;
+            this.move = move;
+            this.weight = weight;
+        }
+    }
+
+    private static ByteBuffer write(List<Entry> entries) {
+        entries.sort((a, b) -> Long.compareUnsigned(a.key, b.key));
+        ByteBuffer buffer = ByteBuffer.allocate(entries.size() * PolyglotBook.ENTRY_BYTES);
+        for (Entry e : entries) {
+            buffer.putLong(e.key).putShort((short) e.move).putShort((short) e.weight).putInt(0);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static List<Entry> sampleEntries(PolyglotBook keyOnly) {
+        long start = keyOnly.key(new Position(Position.START_FEN));
+        long castle = keyOnly.key(new Position("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1"));
+        List<Entry> entries = new ArrayList<>();
+        entries.add(new Entry(start, move("e2", "e4"), 3));
+        entries.add(new Entry(start, move("d2", "d4"), 1));
+        entries.add(new Entry(start, move("g1", "f3"), 0));
+        // not legal here, as after a key collision
+        entries.add(new Entry(start, move("e2", "e5"), 50));
+        entries.add(new Entry(castle, move("e1", "h1"), 1));
+        // filler with keys on both sides of the signed range
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) entries.add(new Entry(random.nextLong(), move("a2", "a3"), 1));
+        return entries;
+    }
+
+    @Test
+    public void picksOnlyLegalWeightedMoves() {
+        long[] keys = randomKeys();
+        PolyglotBook book = new PolyglotBook(
+                write(sampleEntries(new PolyglotBook(ByteBuffer.allocate(0), keys))), keys);
+        Random random = new Random(3);
+        Set<String> seen = new HashSet<>();
+        int e4 = 0;
+        for (int i = 0; i < 400; i++) {
+            String move = book.getMove(Position.START_FEN, random);
+            seen.add(move);
+            if ("e2e4".equals(move)) e4++;
+        }
+        assertEquals(new HashSet<>(Arrays.asList("e2e4", "d2d4")), seen);
+        // weights 3 : 1
+        assertTrue(e4 > 250 && e4 < 350);
+    }
+
+    @Test
+    public void decodesCastlingAsKingTakesRook() {
+        long[] keys = randomKeys();
+        PolyglotBook book = new PolyglotBook(
+                write(sampleEntries(new PolyglotBook(ByteBuffer.allocate(0), keys))), keys);
+        assertEquals("e1g1", book.getMove("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1"));
+    }
+
+    @Test
+    public void outOfBookReturnsNull() {
+        long[] keys = randomKeys();
+        PolyglotBook book = new PolyglotBook(
+                write(sampleEntries(new PolyglotBook(ByteBuffer.allocate(0), keys))), keys);
+        assertNull(book.getMove("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1"));
+    }
+
+    @Test
+    public void enPassantFileOnlyCountsIfCapturePossible() {
+        PolyglotBook book = new PolyglotBook(ByteBuffer.allocate(0), randomKeys());
+        // no black pawn next to e4
+        assertEquals(book.key(new Position("4k3/8/8/8/4P3/8/8/4K3 b - e3 0 1")),
+                book.key(new Position("4k3/8/8/8/4P3/8/8/4K3 b - - 0 1")));
+        assertNotEquals(book.key(new Position("4k3/8/8/8/3pP3/8/8/4K3 b - e3 0 1")),
+                book.key(new Position("4k3/8/8/8/3pP3/8/8/4K3 b - - 0 1")));
+    }
+
+    @Test
+    public void mapsBookFromFile() throws Exception {
+        long[] keys = randomKeys();
+        ByteBuffer data = write(sampleEntries(new PolyglotBook(ByteBuffer.allocate(0), keys)));
+        ByteBuffer keyData = ByteBuffer.allocate(8 * keys.length);
+        for (long k : keys) keyData.putLong(k);
+        File file = File.createTempFile("book", ".bin");
+        file.deleteOnExit();
+        // some bytes in front, like an asset inside an APK
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.write(new byte[100]);
+            raf.write(data.array());
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            PolyglotBook book = PolyglotBook.open(channel, 100, data.limit(),
+                    PolyglotBook.readKeys(new ByteArrayInputStream(keyData.array())));
+            assertEquals(205, book.size());
+            assertEquals("e1g1", book.getMove("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1"));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package de.brockmann.chessinterface.engine;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import de.brockmann.chessinterface.core.Position;
+
+import static org.junit.Assert.*;
+
+public class TablebaseTest {
+
+    @Before
+    public void generate() {
+        Tablebase.generate();
+    }
+
+    private static int wdl(String fen) {
+        return Tablebase.probeWdl(new Position(fen));
+    }
+
+    @Test
+    public void bareMaterialIsDrawn() {
+        assertEquals(Tablebase.DRAW, wdl("8/8/8/4k3/8/8/8/4K3 w - - 0 1"));
+        assertEquals(Tablebase.DRAW, wdl("8/8/8/4k3/8/8/8/2B1K3 w - - 0 1"));
+        assertEquals(Tablebase.UNKNOWN, wdl(Position.START_FEN));
+    }
+
+    @Test
+    public void kpkKnowsOppositionAndRookPawns() {
+        assertEquals(Tablebase.LOSS, wdl("4k3/8/4K3/4P3/8/8/8/8 b - - 0 1"));
+        // stalemate
+        assertEquals(Tablebase.DRAW, wdl("4k3/4P3/4K3/8/8/8/8/8 b - - 0 1"));
+        assertEquals(Tablebase.DRAW, wdl("k7/8/K7/P7/8/8/8/8 w - - 0 1"));
+        // the same with colours swapped
+        assertEquals(Tablebase.WIN, wdl("8/8/8/8/4p3/4k3/8/4K3 b - - 0 1"));
+        assertEquals(Tablebase.DRAW, wdl("8/8/8/8/p7/k7/8/K7 b - - 0 1"));
+    }
+
+    @Test
+    public void longestMatesMatchTheory() {
+        // mate in 10 with the queen and in 16 with the rook, with the loser to move
+        int queen = 0;
+        int rook = 0;
+        for (int strong = 0; strong < 64; strong++) {
+            for (int weak = 0; weak < 64; weak++) {
+                if (Math.abs(strong / 8 - weak / 8) <= 1 && Math.abs(strong % 8 - weak % 8) <= 1) continue;
+                for (int piece = 0; piece < 64; piece++) {
+                    if (piece == strong || piece == weak) continue;
+                    queen = Math.max(queen, Tablebase.mateDistance(position(strong, weak, piece, 'Q')));
+                    rook = Math.max(rook, Tablebase.mateDistance(position(strong, weak, piece, 'R')));
+                }
+            }
+        }
+        assertEquals(20, queen);
+        assertEquals(32, rook);
+    }
+
+    private static Position position(int strong, int weak, int piece, char type) {
+        char[] board = new char[64];
+        Arrays.fill(board, '1');
+        board[strong] = 'K';
+        board[weak] = 'k';
+        board[piece] = type;
+        StringBuilder fen = new StringBuilder(90);
+        for (int row = 0; row < 8; row++) {
+            if (row > 0) fen.append('/');
+            fen.append(board, row * 8, 8);
+        }
+        return new Position(fen.append(" b - - 0 1").toString());
+    }
+
+    @Test
+    public void engineMatesInOneFromTheTable() {
+        AnalysisResult result = TablebaseEngine.probe("7k/8/6K1/8/8/8/8/R7 w - - 0 1");
+        assertNotNull(result);
+        assertEquals("a1a8", result.getBestMove());
+        assertEquals(1, result.getMate());
+        assertNull(TablebaseEngine.probe(Position.START_FEN));
+    }
+
+    @Test
+    public void searchUsesExactMateScores() {
+        LocalEngine engine = new LocalEngine(1);
+        engine.start();
+        AnalysisResult result = engine.analyse("8/8/8/4k3/8/8/8/R3K3 w - - 0 1", 3);
+        assertEquals(14, result.getMate());
+    }
+}
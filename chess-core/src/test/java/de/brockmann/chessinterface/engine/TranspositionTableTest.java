@@ -0,0 +1,49 @@
+package de.brockmann.chessinterface.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TranspositionTableTest {
+
+    @Test
+    public void storeAndProbe() {
+        TranspositionTable tt = new TranspositionTable(1);
+        long key = 0x123456789ABCDEFL;
+        tt.store(key, 1234, -250, 7, TranspositionTable.BOUND_EXACT);
+        long entry = tt.probe(key);
+        assertEquals(1234, TranspositionTable.move(entry));
+        assertEquals(-250, TranspositionTable.score(entry));
+        assertEquals(7, TranspositionTable.depth(entry));
+        assertEquals(TranspositionTable.BOUND_EXACT, TranspositionTable.bound(entry));
+        assertEquals(0, tt.probe(key ^ 1));
+    }
+
+    @Test
+    public void bucketKeepsDeepEntries() {
+        TranspositionTable tt = new TranspositionTable(1);
+        // same upper 32 bits, so every key lands in the same bucket
+        for (int i = 0; i < TranspositionTable.BUCKET_SIZE; i++) {
+            tt.store(i + 1, 0, 0, 10 + i, TranspositionTable.BOUND_LOWER);
+        }
+        tt.store(100, 0, 0, 1, TranspositionTable.BOUND_LOWER);
+        assertEquals(0, tt.probe(1));
+        for (int i = 1; i < TranspositionTable.BUCKET_SIZE; i++) {
+            assertNotEquals(0, tt.probe(i + 1));
+        }
+        assertNotEquals(0, tt.probe(100));
+    }
+
+    @Test
+    public void staleEntriesAreReplacedFirst() {
+        TranspositionTable tt = new TranspositionTable(1);
+        for (int i = 0; i < TranspositionTable.BUCKET_SIZE; i++) {
+            if (i == 2) tt.newSearch();
+            tt.store(i + 1, 0, 0, 10, TranspositionTable.BOUND_LOWER);
+        }
+        tt.newSearch();
+        tt.store(100, 0, 0, 1, TranspositionTable.BOUND_LOWER);
+        assertEquals(0, tt.probe(1));
+        assertNotEquals(0, tt.probe(3));
+    }
+}
@@ -21,4 +21,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "ChessInterface"
 include(":app")
+include(":chess-core")
  
\ No newline at end of file